@@ -106,54 +106,66 @@ public class Context {
   }
 
   public Object extract(Type type) throws IOException {
+    return extractor(type).extract(this);
+  }
+
+  // Resolves, once and for all, how a parameter of the given type is extracted
+  // from the context. Resource routes call this when they are registered.
+  //
+  public static Extractor extractor(Type type) {
     if (type instanceof Class) {
       Class<?> clazz = (Class<?>) type;
 
       if (clazz.isAssignableFrom(Context.class)) {
-        return this;
+        return context -> context;
       }
       if (clazz.isAssignableFrom(Request.class)) {
-        return request;
+        return Context::request;
       }
       if (clazz.isAssignableFrom(Response.class)) {
-        return response;
+        return Context::response;
       }
       if (clazz.isAssignableFrom(Cookies.class)) {
-        return cookies();
+        return Context::cookies;
       }
       if (clazz.isAssignableFrom(Query.class)) {
-        return query();
+        return Context::query;
       }
       if (clazz.isAssignableFrom(User.class)) {
-        return currentUser;
+        return Context::currentUser;
       }
       if (clazz.isAssignableFrom(byte[].class)) {
-        return request.contentAsBytes();
+        return context -> context.request().contentAsBytes();
       }
       if (clazz.isAssignableFrom(String.class)) {
-        return request.content();
+        return context -> context.request().content();
       }
       if (clazz.isAssignableFrom(InputStream.class)) {
-        return request.inputStream();
+        return context -> context.request().inputStream();
       }
       if (clazz.isAssignableFrom(Form.class)) {
-        return new Form(query().keyValues());
+        return context -> new Form(context.query().keyValues());
       }
       if (clazz.isAssignableFrom(Site.class)) {
-        return site;
+        return Context::site;
       }
     }
 
     if (type instanceof ParameterizedType) {
       if (isListOfParts((ParameterizedType) type)) {
-        return parts();
+        return Context::parts;
       }
       if (isGenericMap((ParameterizedType) type)) {
-        return query().keyValues();
+        return context -> context.query().keyValues();
       }
     }
 
-    return request().contentAs(type);
+    return context -> context.request().contentAs(type);
+  }
+
+  @FunctionalInterface
+  public interface Extractor {
+    Object extract(Context context) throws IOException;
   }
 
   private static boolean isListOfParts(ParameterizedType type) {
@@ -19,6 +19,8 @@ import net.codestory.http.internal.Unwrappable;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.util.Map;
 
 public interface Response extends Unwrappable {
@@ -26,6 +28,10 @@ public interface Response extends Unwrappable {
 
   OutputStream outputStream() throws IOException;
 
+  default WritableByteChannel channel() throws IOException {
+    return Channels.newChannel(outputStream());
+  }
+
   void setContentLength(long length);
 
   void setHeader(String name, String value);
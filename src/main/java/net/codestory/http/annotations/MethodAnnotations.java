@@ -38,13 +38,26 @@ public class MethodAnnotations {
     operations.add((context, payloadSupplier) -> operation.apply(context, payloadSupplier.apply(context)));
   }
 
-  public Payload apply(Context context, Function<Context, Payload> payloadSupplier) {
-    Function<Context, Payload> current = payloadSupplier;
+  public boolean isEmpty() {
+    return operations.isEmpty();
+  }
+
+  // Nests the operations around the payload supplier, in registration order.
+  // The extra argument, typically the path parameters, is passed through.
+  // Without operations, the payload supplier is returned as is.
+  //
+  public <T> BiFunction<Context, T, Payload> compose(BiFunction<Context, T, Payload> payloadSupplier) {
+    BiFunction<Context, T, Payload> current = payloadSupplier;
 
     for (BiFunction<Context, Function<Context, Payload>, Payload> operation : operations) {
-      current = ctx -> operation.apply(ctx, payloadSupplier);
+      BiFunction<Context, T, Payload> next = current;
+      current = (ctx, argument) -> operation.apply(ctx, c -> next.apply(c, argument));
     }
 
-    return current.apply(context);
+    return current;
+  }
+
+  public Payload apply(Context context, Function<Context, Payload> payloadSupplier) {
+    return compose((Context ctx, Void ignored) -> payloadSupplier.apply(ctx)).apply(context, null);
   }
 }
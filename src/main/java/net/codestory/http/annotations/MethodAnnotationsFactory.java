@@ -49,7 +49,8 @@ public class MethodAnnotationsFactory {
   private <T extends Annotation> void addAroundOperationIfNecessary(Class<T> annotationType, Supplier<? extends ApplyAroundAnnotation<? extends Annotation>> apply, Method method, MethodAnnotations methodAnnotations) {
     T annotation = findAnnotationOnMethodOrClass(annotationType, method);
     if (annotation != null) {
-      methodAnnotations.addAroundOperation((context, payloadSupplier) -> ((ApplyAroundAnnotation<T>) apply.get()).apply(annotation, context, payloadSupplier));
+      ApplyAroundAnnotation<T> applier = (ApplyAroundAnnotation<T>) apply.get();
+      methodAnnotations.addAroundOperation((context, payloadSupplier) -> applier.apply(annotation, context, payloadSupplier));
     }
   }
 
@@ -57,7 +58,8 @@ public class MethodAnnotationsFactory {
   private <T extends Annotation> void addAfterOperationIfNecessary(Class<T> annotationType, Supplier<? extends ApplyAfterAnnotation<? extends Annotation>> apply, Method method, MethodAnnotations methodAnnotations) {
     T annotation = findAnnotationOnMethodOrClass(annotationType, method);
     if (annotation != null) {
-      methodAnnotations.addAfterOperation((context, payload) -> ((ApplyAfterAnnotation<T>) apply.get()).apply(annotation, context, payload));
+      ApplyAfterAnnotation<T> applier = (ApplyAfterAnnotation<T>) apply.get();
+      methodAnnotations.addAfterOperation((context, payload) -> applier.apply(annotation, context, payload));
     }
   }
 
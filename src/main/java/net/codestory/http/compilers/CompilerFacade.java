@@ -48,6 +48,17 @@ public class CompilerFacade implements CompilersConfiguration {
 		this.markdownCompiler = memoize(() -> createMarkdownCompiler());
 	}
 
+	// Shares the caches and the compilers of the given facade but has its own
+	// registries: configuring it doesn't change what the given one serves.
+	//
+	public CompilerFacade(Env env, CompilerFacade shared) {
+		this.resources = shared.resources;
+		this.compilers = memoize(() -> new Compilers(shared.compilers.get()));
+		this.templatingEngine = memoize(() -> createHandlebarsCompiler(env, resources));
+		this.viewCompiler = memoize(() -> createViewCompiler(resources));
+		this.markdownCompiler = shared.markdownCompiler;
+	}
+
 	// Creation
 
 	private Compilers createCompilers(Env env, Resources resources) {
@@ -111,6 +122,14 @@ public class CompilerFacade implements CompilersConfiguration {
 		return viewCompiler.get().render(uri, variables);
 	}
 
+	public Set<Path> viewDependencies(String uri) {
+		return viewCompiler.get().dependencies(uri);
+	}
+
+	public boolean isDynamicView(String uri) {
+		return viewCompiler.get().isDynamic(uri);
+	}
+
   public boolean supportsTemplating(Path path) {
     return templatingEngine.get().supports(path);
   }
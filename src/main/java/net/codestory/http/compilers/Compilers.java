@@ -36,10 +36,11 @@ public class Compilers {
   private final Map<String, Supplier<Compiler>> compilerByExtension = new HashMap<>();
   private final Map<String, Set<String>> extensionsThatCompileTo = new HashMap<>();
   private final Map<String, String> compiledExtensions = new HashMap<>();
-  private final Map<String, CacheEntry> cache = new ConcurrentHashMap<>();
+  private final Map<String, Compiled> cache;
 
   public Compilers(Env env, Resources resources) {
     this.env = env;
+    this.cache = new ConcurrentHashMap<>();
 
     boolean prodMode = env.prodMode();
     diskCache = memoize(() -> new DiskCache("V10", prodMode));
@@ -52,6 +53,18 @@ public class Compilers {
     }
   }
 
+  // Starts with the compilers registered on the given instance and shares its
+  // cache. Registering compilers on the copy doesn't change the original.
+  //
+  public Compilers(Compilers shared) {
+    this.env = shared.env;
+    this.diskCache = shared.diskCache;
+    this.cache = shared.cache;
+    this.compilerByExtension.putAll(shared.compilerByExtension);
+    this.compiledExtensions.putAll(shared.compiledExtensions);
+    shared.extensionsThatCompileTo.forEach((extension, sourceExtensions) -> extensionsThatCompileTo.put(extension, new HashSet<>(sourceExtensions)));
+  }
+
   public void register(Supplier<Compiler> compilerFactory, String compiledExtension, String sourceExtension) {
     Supplier<Compiler> compilerLazyFactory = memoize(compilerFactory);
 
@@ -72,34 +85,53 @@ public class Compilers {
     return compiledExtensions.get(extension);
   }
 
+  // One entry per file, replaced only when its source or its compiler changes
+  //
   public CacheEntry compile(SourceFile sourceFile) {
-    String key = sourceFile.getFileName() + ';' + sourceFile.getSource();
+    Entry<String, Supplier<Compiler>> compiler = compilerFor(sourceFile);
+    String source = sourceFile.getSource();
 
-    return cache.computeIfAbsent(key, ignore -> doCompile(sourceFile, key));
+    return cache.compute(sourceFile.getFileName(), (fileName, compiled) -> {
+      if ((compiled != null) && (compiled.compiler == compiler.getValue()) && compiled.source.equals(source)) {
+        return compiled;
+      }
+      return new Compiled(compiler.getValue(), source, doCompile(sourceFile, compiler.getKey(), compiler.getValue(), fileName + ';' + source));
+    }).entry;
   }
 
-  private CacheEntry doCompile(SourceFile sourceFile, String key) {
+  private Entry<String, Supplier<Compiler>> compilerFor(SourceFile sourceFile) {
     for (Entry<String, Supplier<Compiler>> entry : compilerByExtension.entrySet()) {
-      String extension = entry.getKey();
-      if (!sourceFile.hasExtension(extension)) {
-        continue;
+      if (sourceFile.hasExtension(entry.getKey())) {
+        return entry;
       }
+    }
 
-      Supplier<Compiler> compiler = entry.getValue();
+    throw new IllegalArgumentException("Unable to compile " + sourceFile.getFileName() + ". Unknown extension");
+  }
 
-      // Hack until I find something better
-      if (".less".equals(extension) && sourceFile.getSource().contains("@import")) {
-        return CacheEntry.noCache(compiler.get().compile(sourceFile));
-      }
+  private CacheEntry doCompile(SourceFile sourceFile, String extension, Supplier<Compiler> compiler, String key) {
+    // Hack until I find something better
+    if (".less".equals(extension) && sourceFile.getSource().contains("@import")) {
+      return CacheEntry.noCache(compiler.get().compile(sourceFile));
+    }
 
-      if (env.diskCache()) {
-        String sha1 = Sha1.of(key);
-        return diskCache.get().computeIfAbsent(sha1, extension, () -> compiler.get().compile(sourceFile));
-      } else {
-        return CacheEntry.fromString(compiler.get().compile(sourceFile));
-      }
+    if (env.diskCache()) {
+      String sha1 = Sha1.of(key);
+      return diskCache.get().computeIfAbsent(sha1, extension, () -> compiler.get().compile(sourceFile));
+    } else {
+      return CacheEntry.fromString(compiler.get().compile(sourceFile));
     }
+  }
 
-    throw new IllegalArgumentException("Unable to compile " + sourceFile.getFileName() + ". Unknown extension");
+  private static class Compiled {
+    private final Supplier<Compiler> compiler;
+    private final String source;
+    private final CacheEntry entry;
+
+    private Compiled(Supplier<Compiler> compiler, String source, CacheEntry entry) {
+      this.compiler = compiler;
+      this.source = source;
+      this.entry = entry;
+    }
   }
 }
@@ -17,6 +17,8 @@ package net.codestory.http.convert;
 
 import java.io.*;
 import java.lang.reflect.*;
+import java.util.*;
+import java.util.concurrent.*;
 import java.util.function.*;
 
 import com.fasterxml.jackson.annotation.*;
@@ -27,7 +29,23 @@ import com.fasterxml.jackson.databind.type.*;
 import com.fasterxml.jackson.datatype.jsr310.*;
 
 public class TypeConvert {
+  private static final Map<Class<?>, Function<String, Object>> PARSERS = new HashMap<>();
+
+  static {
+    PARSERS.put(int.class, Integer::parseInt);
+    PARSERS.put(Integer.class, Integer::valueOf);
+    PARSERS.put(long.class, Long::parseLong);
+    PARSERS.put(Long.class, Long::valueOf);
+    PARSERS.put(short.class, Short::parseShort);
+    PARSERS.put(Short.class, Short::valueOf);
+    PARSERS.put(byte.class, Byte::parseByte);
+    PARSERS.put(Byte.class, Byte::valueOf);
+    PARSERS.put(boolean.class, TypeConvert::parseBoolean);
+    PARSERS.put(Boolean.class, TypeConvert::parseBoolean);
+  }
+
   private static ObjectMapper CURRENT_OBJECT_MAPPER = createDefaultObjectMapper();
+  private static Map<Type, ObjectReader> READERS = new ConcurrentHashMap<>();
 
   private TypeConvert() {
     // static class
@@ -45,6 +63,7 @@ public class TypeConvert {
     ObjectMapper defaultObjectMapper = createDefaultObjectMapper();
     ObjectMapper replacementObjectMapper = configureOrReplace.apply(defaultObjectMapper);
     CURRENT_OBJECT_MAPPER = replacementObjectMapper;
+    READERS = new ConcurrentHashMap<>();
   }
 
   public static <T> T fromJson(String json, Class<T> type) {
@@ -57,7 +76,7 @@ public class TypeConvert {
 
   public static <T> T fromJson(String json, Type type) {
     try {
-      return CURRENT_OBJECT_MAPPER.readValue(json, TypeFactory.defaultInstance().constructType(type));
+      return reader(type).readValue(json);
     } catch (IOException e) {
       throw new IllegalArgumentException("Unable to parse json", e);
     }
@@ -87,6 +106,55 @@ public class TypeConvert {
     return converted;
   }
 
+  // Converts path parameters. Primitive and boxed types are parsed directly
+  // and only fall back to Jackson for values they can't parse.
+  //
+  public static Function<String, Object> converterFromString(Type type) {
+    if ((type == String.class) || (type == Object.class)) {
+      return value -> value;
+    }
+
+    Function<String, Object> parser = PARSERS.get(type);
+    if (parser == null) {
+      return value -> convertValue(value, type);
+    }
+
+    Object defaultValue = PrimitiveDefaultValues.INSTANCE.get((Class<?>) type);
+    return value -> {
+      if (value == null) {
+        return defaultValue;
+      }
+
+      String trimmed = value.trim();
+      if (trimmed.isEmpty() || trimmed.equals("null")) {
+        return defaultValue;
+      }
+
+      try {
+        return parser.apply(trimmed);
+      } catch (IllegalArgumentException e) {
+        return convertValue(value, type);
+      }
+    };
+  }
+
+  private static Object parseBoolean(String value) {
+    switch (value) {
+      case "true":
+      case "True":
+        return Boolean.TRUE;
+      case "false":
+      case "False":
+        return Boolean.FALSE;
+      default:
+        throw new IllegalArgumentException("Not a boolean: " + value);
+    }
+  }
+
+  private static ObjectReader reader(Type type) {
+    return READERS.computeIfAbsent(type, key -> CURRENT_OBJECT_MAPPER.reader(TypeFactory.defaultInstance().constructType(key)));
+  }
+
   public static <T> T convertValue(Object value, TypeReference<T> type) {
     return CURRENT_OBJECT_MAPPER.convertValue(value, type);
   }
@@ -99,6 +167,53 @@ public class TypeConvert {
     }
   }
 
+  // Writes through a buffered generator, without building the whole document.
+  // The output stream is left open.
+  //
+  public static void writeJson(Object value, OutputStream output) throws IOException {
+    try (JsonGenerator generator = CURRENT_OBJECT_MAPPER.getFactory().createGenerator(output, JsonEncoding.UTF8)) {
+      generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      CURRENT_OBJECT_MAPPER.writer().writeValue(generator, value);
+    } catch (JsonProcessingException e) {
+      throw new IllegalArgumentException("Unable to serialize to json", e);
+    }
+  }
+
+  // Elements are serialized one by one by the same writer, so that memory
+  // doesn't grow with the number of elements
+  //
+  public static void writeJsonArray(Iterator<?> elements, OutputStream output) throws IOException {
+    ObjectWriter writer = CURRENT_OBJECT_MAPPER.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+    try (JsonGenerator generator = CURRENT_OBJECT_MAPPER.getFactory().createGenerator(output, JsonEncoding.UTF8)) {
+      generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      generator.writeStartArray();
+      while (elements.hasNext()) {
+        writer.writeValue(generator, elements.next());
+      }
+      generator.writeEndArray();
+    } catch (JsonProcessingException e) {
+      throw new IllegalArgumentException("Unable to serialize to json", e);
+    }
+  }
+
+  // One json document per line
+  //
+  public static void writeJsonLines(Iterator<?> elements, OutputStream output) throws IOException {
+    ObjectWriter writer = CURRENT_OBJECT_MAPPER.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+    try (JsonGenerator generator = CURRENT_OBJECT_MAPPER.getFactory().createGenerator(output, JsonEncoding.UTF8)) {
+      generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      generator.setRootValueSeparator(null);
+      while (elements.hasNext()) {
+        writer.writeValue(generator, elements.next());
+        generator.writeRaw('\n');
+      }
+    } catch (JsonProcessingException e) {
+      throw new IllegalArgumentException("Unable to serialize to json", e);
+    }
+  }
+
   public static String toJson(Object value) {
     try {
       return CURRENT_OBJECT_MAPPER.writer().writeValueAsString(value);
@@ -27,4 +27,19 @@ public interface Filter extends Serializable {
   default boolean matches(String uri, Context context) {
     return true;
   }
+
+  // Optionally declares up front the uri prefixes this filter can match.
+  // The filter is then skipped for every other uri without calling matches.
+  // null means any uri.
+  //
+  default String[] uriPrefixes() {
+    return null;
+  }
+
+  // Optionally declares up front the http methods this filter can match.
+  // null means any method.
+  //
+  default String[] methods() {
+    return null;
+  }
 }
\ No newline at end of file
@@ -72,6 +72,11 @@ public class CookieAuthFilter implements Filter {
     return uri.startsWith("/auth/") || (uri.startsWith(uriPrefix) && of(ignoreExtensions).noneMatch(uri::endsWith));
   }
 
+  @Override
+  public String[] uriPrefixes() {
+    return new String[]{"/auth/", uriPrefix};
+  }
+
   @Override
   public Payload apply(String uri, Context context, PayloadSupplier nextFilter) throws Exception {
     return uri.startsWith("/auth/") ? authenticationUri(uri, context, nextFilter) : otherUri(uri, context, nextFilter);
@@ -42,6 +42,11 @@ public class BasicAuthFilter implements Filter {
     return uri.startsWith(uriPrefix);
   }
 
+  @Override
+  public String[] uriPrefixes() {
+    return new String[]{uriPrefix};
+  }
+
   @Override
   public Payload apply(String uri, Context context, PayloadSupplier nextFilter) throws Exception {
     String authorization = context.header(AUTHORIZATION);
@@ -24,6 +24,8 @@ import net.codestory.http.payload.Payload;
 import net.codestory.http.security.SessionIdStore;
 import net.codestory.http.security.Users;
 
+import static java.util.stream.Stream.concat;
+import static java.util.stream.Stream.of;
 import static net.codestory.http.constants.Headers.AUTHORIZATION;
 
 public class MixedAuthFilter implements Filter {
@@ -45,6 +47,11 @@ public class MixedAuthFilter implements Filter {
     return authFilter(context).matches(uri, context);
   }
 
+  @Override
+  public String[] uriPrefixes() {
+    return concat(of(cookieAuthFilter.uriPrefixes()), of(basicAuthFilter.uriPrefixes())).toArray(String[]::new);
+  }
+
   @Override
   public Payload apply(String uri, Context context, PayloadSupplier nextFilter) throws Exception {
     return authFilter(context).apply(uri, context, nextFilter);
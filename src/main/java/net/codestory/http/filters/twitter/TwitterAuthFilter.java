@@ -41,6 +41,11 @@ public class TwitterAuthFilter implements Filter {
     return uri.startsWith(uriPrefix);
   }
 
+  @Override
+  public String[] uriPrefixes() {
+    return new String[]{uriPrefix};
+  }
+
   private static String validPrefix(String prefix) {
     return prefix.endsWith("/") ? prefix : prefix + "/";
   }
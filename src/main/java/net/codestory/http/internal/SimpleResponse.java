@@ -16,6 +16,7 @@
 package net.codestory.http.internal;
 
 import java.io.*;
+import java.nio.channels.*;
 import java.text.*;
 import java.util.*;
 
@@ -41,6 +42,11 @@ class SimpleResponse implements Response {
     return response.getOutputStream();
   }
 
+  @Override
+  public WritableByteChannel channel() throws IOException {
+    return response.getByteChannel();
+  }
+
   @Override
   public void setContentLength(long length) {
     response.setContentLength(length);
@@ -0,0 +1,171 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.io;
+
+import java.io.*;
+
+// Tells if a class file carries a given annotation, without loading the class.
+// Only the constant pool and the class level RuntimeVisibleAnnotations attribute
+// are parsed. Fields, methods and other attributes are skipped.
+//
+class ClassFileAnnotations {
+  private static final int MAGIC = 0xCAFEBABE;
+  private static final String RUNTIME_VISIBLE_ANNOTATIONS = "RuntimeVisibleAnnotations";
+
+  private ClassFileAnnotations() {
+    // static class
+  }
+
+  // The descriptor looks like Lnet/codestory/http/annotations/Resource;
+  static boolean isAnnotatedWith(byte[] classFile, String descriptor) throws IOException {
+    DataInputStream input = new DataInputStream(new ByteArrayInputStream(classFile));
+    if (input.readInt() != MAGIC) {
+      return false;
+    }
+    input.skipBytes(4); // Minor and major versions
+
+    String[] utf8 = readConstantPool(input);
+
+    // The annotation type can't be used if it's not in the constant pool
+    if (!contains(utf8, descriptor)) {
+      return false;
+    }
+
+    input.skipBytes(6); // Access flags, this class, super class
+    input.skipBytes(2 * input.readUnsignedShort()); // Interfaces
+    skipMembers(input); // Fields
+    skipMembers(input); // Methods
+
+    int attributesCount = input.readUnsignedShort();
+    for (int i = 0; i < attributesCount; i++) {
+      String name = utf8[input.readUnsignedShort()];
+      int length = input.readInt();
+
+      if (!RUNTIME_VISIBLE_ANNOTATIONS.equals(name)) {
+        input.skipBytes(length);
+        continue;
+      }
+
+      int annotationsCount = input.readUnsignedShort();
+      for (int j = 0; j < annotationsCount; j++) {
+        if (descriptor.equals(utf8[input.readUnsignedShort()])) {
+          return true;
+        }
+        skipElementValuePairs(input);
+      }
+    }
+
+    return false;
+  }
+
+  // Only the Utf8 entries are kept, indexed like the constant pool
+  private static String[] readConstantPool(DataInputStream input) throws IOException {
+    int count = input.readUnsignedShort();
+    String[] utf8 = new String[count];
+
+    for (int i = 1; i < count; i++) {
+      int tag = input.readUnsignedByte();
+      switch (tag) {
+        case 1: // Utf8
+          utf8[i] = input.readUTF();
+          break;
+        case 7: // Class
+        case 8: // String
+        case 16: // MethodType
+        case 19: // Module
+        case 20: // Package
+          input.skipBytes(2);
+          break;
+        case 15: // MethodHandle
+          input.skipBytes(3);
+          break;
+        case 3: // Integer
+        case 4: // Float
+        case 9: // Fieldref
+        case 10: // Methodref
+        case 11: // InterfaceMethodref
+        case 12: // NameAndType
+        case 17: // Dynamic
+        case 18: // InvokeDynamic
+          input.skipBytes(4);
+          break;
+        case 5: // Long
+        case 6: // Double
+          input.skipBytes(8);
+          i++;
+          break;
+        default:
+          throw new IOException("Invalid constant pool tag " + tag);
+      }
+    }
+
+    return utf8;
+  }
+
+  private static boolean contains(String[] values, String value) {
+    for (String candidate : values) {
+      if (value.equals(candidate)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static void skipMembers(DataInputStream input) throws IOException {
+    int count = input.readUnsignedShort();
+    for (int i = 0; i < count; i++) {
+      input.skipBytes(6); // Access flags, name, descriptor
+      skipAttributes(input);
+    }
+  }
+
+  private static void skipAttributes(DataInputStream input) throws IOException {
+    int count = input.readUnsignedShort();
+    for (int i = 0; i < count; i++) {
+      input.skipBytes(2);
+      input.skipBytes(input.readInt());
+    }
+  }
+
+  private static void skipElementValuePairs(DataInputStream input) throws IOException {
+    int count = input.readUnsignedShort();
+    for (int i = 0; i < count; i++) {
+      input.skipBytes(2); // Element name
+      skipElementValue(input);
+    }
+  }
+
+  private static void skipElementValue(DataInputStream input) throws IOException {
+    int tag = input.readUnsignedByte();
+    switch (tag) {
+      case 'e': // Enum
+        input.skipBytes(4);
+        break;
+      case '@': // Annotation
+        input.skipBytes(2);
+        skipElementValuePairs(input);
+        break;
+      case '[': // Array
+        int count = input.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+          skipElementValue(input);
+        }
+        break;
+      default: // Constant or class
+        input.skipBytes(2);
+    }
+  }
+}
@@ -86,6 +86,21 @@ public class ClassPaths {
     return emptyList();
   }
 
+  // The folder or the jar file of a classpath root
+  static File rootFile(URL url) {
+    if ("jar".equals(url.getProtocol())) {
+      try {
+        URLConnection urlConnection = url.openConnection();
+        if (urlConnection instanceof JarURLConnection) {
+          return getFile(((JarURLConnection) urlConnection).getJarFileURL());
+        }
+      } catch (IOException e) {
+        // Ignore
+      }
+    }
+    return getFile(url);
+  }
+
   private static File getFile(URL url) {
     try {
       String path = url.toURI().getSchemeSpecificPart();
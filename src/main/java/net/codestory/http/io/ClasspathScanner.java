@@ -15,16 +15,35 @@
  */
 package net.codestory.http.io;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.*;
+import static net.codestory.http.io.Strings.substringBeforeLast;
+
 import java.io.*;
-import java.lang.annotation.Annotation;
+import java.lang.annotation.*;
 import java.net.*;
 import java.nio.file.*;
 import java.util.*;
 import java.util.function.Predicate;
+import java.util.jar.*;
+import java.util.stream.*;
 
-import static net.codestory.http.io.Strings.substringBeforeLast;
+import net.codestory.http.misc.Sha1;
 
 public class ClasspathScanner {
+  private final File indexFolder;
+
+  public ClasspathScanner() {
+    this(null);
+  }
+
+  // Scan results are kept in indexFolder, keyed by a fingerprint of the scanned
+  // jars and folders, so that a restart with the same classpath doesn't scan.
+  //
+  public ClasspathScanner(File indexFolder) {
+    this.indexFolder = indexFolder;
+  }
+
   public Set<String> getResources(Path root) {
     String prefix = root.toString();
 
@@ -32,13 +51,16 @@ public class ClasspathScanner {
   }
 
   public Set<Class<?>> getTypesAnnotatedWith(String packageToScan, Class<? extends Annotation> annotation) {
-    String prefix = packageToScan.replace('.', '/');
+    return getTypesAnnotatedWith(packageToScan, annotation, null);
+  }
 
+  // Only the matching classes are loaded. Jars and folders that contain the
+  // resource named skipRootsWith, if any, are not scanned.
+  //
+  public Set<Class<?>> getTypesAnnotatedWith(String packageToScan, Class<? extends Annotation> annotation, String skipRootsWith) {
     Set<Class<?>> classes = new LinkedHashSet<>();
 
-    for (String classFile : listPaths(prefix, path -> path.endsWith(".class"))) {
-      String className = substringBeforeLast(classFile.replace('/', '.'), ".class");
-
+    for (String className : getTypeNamesAnnotatedWith(packageToScan, annotation, skipRootsWith)) {
       try {
         Class<?> type = Class.forName(className);
         if (type.isAnnotationPresent(annotation)) {
@@ -52,6 +74,133 @@ public class ClasspathScanner {
     return classes;
   }
 
+  // Reads the class files without loading them. Inherited annotations can't be
+  // found this way so every class is then a candidate.
+  //
+  public Set<String> getTypeNamesAnnotatedWith(String packageToScan, Class<? extends Annotation> annotation) {
+    return getTypeNamesAnnotatedWith(packageToScan, annotation, null);
+  }
+
+  public Set<String> getTypeNamesAnnotatedWith(String packageToScan, Class<? extends Annotation> annotation, String skipRootsWith) {
+    String prefix = packageToScan.replace('.', '/');
+    String descriptor = annotation.isAnnotationPresent(Inherited.class) ? null : "L" + annotation.getName().replace('.', '/') + ";";
+
+    Set<File> skipped = (skipRootsWith == null) ? Collections.emptySet() : roots(skipRootsWith).collect(toSet());
+    List<File> roots = roots(prefix).filter(root -> !skipped.contains(root)).collect(toList());
+
+    File index = null;
+    if (indexFolder != null) {
+      index = new File(indexFolder, "scan-" + Sha1.of(fingerprint(roots, prefix) + annotation.getName()) + ".idx");
+      if (index.exists()) {
+        try {
+          return new LinkedHashSet<>(Files.readAllLines(index.toPath(), UTF_8));
+        } catch (IOException e) {
+          // Scan again
+        }
+      }
+    }
+
+    Set<String> classNames = roots.parallelStream()
+      .flatMap(root -> scan(root, prefix, descriptor))
+      .collect(toCollection(LinkedHashSet::new));
+
+    if (index != null) {
+      try {
+        Files.createDirectories(indexFolder.toPath());
+        Files.write(index.toPath(), classNames, UTF_8);
+      } catch (IOException e) {
+        // Ignore
+      }
+    }
+
+    return classNames;
+  }
+
+  private static Stream<File> roots(String name) {
+    return urls(name).stream().map(ClassPaths::rootFile).filter(Objects::nonNull).distinct();
+  }
+
+  private static Stream<String> scan(File root, String prefix, String descriptor) {
+    try {
+      List<String> classNames;
+      if (root.isDirectory()) {
+        classNames = classFiles(root, prefix).parallelStream()
+          .filter(path -> isAnnotatedWith(path, descriptor))
+          .map(path -> Resources.relativePath(root.toPath(), path))
+          .collect(toList());
+      } else {
+        try (JarFile jarFile = new JarFile(root)) {
+          classNames = jarFile.stream()
+            .filter(entry -> entry.getName().startsWith(prefix) && entry.getName().endsWith(".class"))
+            .collect(toList())
+            .parallelStream()
+            .filter(entry -> isAnnotatedWith(jarFile, entry, descriptor))
+            .map(JarEntry::getName)
+            .collect(toList());
+        }
+      }
+
+      return classNames.stream().map(classFile -> substringBeforeLast(classFile.replace('\\', '/').replace('/', '.'), ".class"));
+    } catch (IOException e) {
+      return Stream.empty();
+    }
+  }
+
+  private static List<Path> classFiles(File root, String prefix) throws IOException {
+    Path folder = root.toPath().resolve(prefix);
+    if (!Files.isDirectory(folder)) {
+      return Collections.emptyList();
+    }
+
+    try (Stream<Path> paths = Files.walk(folder)) {
+      return paths.filter(path -> path.toString().endsWith(".class")).collect(toList());
+    }
+  }
+
+  private static boolean isAnnotatedWith(Path path, String descriptor) {
+    try {
+      return (descriptor == null) || ClassFileAnnotations.isAnnotatedWith(Files.readAllBytes(path), descriptor);
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  private static boolean isAnnotatedWith(JarFile jarFile, JarEntry entry, String descriptor) {
+    if (descriptor == null) {
+      return true;
+    }
+
+    try (InputStream input = jarFile.getInputStream(entry)) {
+      return ClassFileAnnotations.isAnnotatedWith(InputStreams.readBytes(input), descriptor);
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  // Jars are identified by their size and date, folders by the size and date
+  // of each class file under the scanned package
+  //
+  private static String fingerprint(List<File> roots, String prefix) {
+    StringBuilder fingerprint = new StringBuilder(prefix);
+
+    for (File root : roots) {
+      fingerprint.append('|').append(root.getAbsolutePath());
+      if (root.isDirectory()) {
+        try {
+          for (Path path : classFiles(root, prefix)) {
+            fingerprint.append('|').append(path).append(':').append(Files.size(path)).append(':').append(Files.getLastModifiedTime(path).toMillis());
+          }
+        } catch (IOException e) {
+          fingerprint.append("|?").append(System.nanoTime());
+        }
+      } else {
+        fingerprint.append(':').append(root.length()).append(':').append(root.lastModified());
+      }
+    }
+
+    return fingerprint.toString();
+  }
+
   public Set<String> listPaths(String prefix, Predicate<String> filter) {
     Set<String> paths = new LinkedHashSet<>();
 
@@ -85,6 +85,28 @@ public class Resources implements Serializable{
     return existsInFileSystem(pathWithPrefix) ? readFileBytes(file(pathWithPrefix)) : readClasspathBytes(pathWithPrefix);
   }
 
+  // The file behind a path, or null if it's not on the disk
+  public File fileOnDisk(Path path) {
+    String pathWithPrefix = withPrefix(path);
+    if (existsInFileSystem(pathWithPrefix)) {
+      return file(pathWithPrefix);
+    }
+
+    URL url = getResource(pathWithPrefix);
+    if (url == null) {
+      return null;
+    }
+
+    File file = fileForClasspath(url);
+    return ((file != null) && file.isFile()) ? file : null;
+  }
+
+  // Last modification of a path, or 0 if it's not on the disk
+  public long lastModified(Path path) {
+    File file = fileOnDisk(path);
+    return (file == null) ? 0L : file.lastModified();
+  }
+
   // static
 
   public static String relativePath(Path parent, Path path) {
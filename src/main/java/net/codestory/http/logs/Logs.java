@@ -68,7 +68,7 @@ public class Logs {
   public static void printKnownWebjars(Collection<String> uris, String extension) {
     LOG.error("Found these webjars files with extension: " + extension);
     for (String uri : uris) {
-      LOG.error(" + " + substringAfter(uri, "META-INF/resources"));
+      LOG.error(" + " + uri);
     }
   }
 
@@ -81,6 +81,10 @@ public class Logs {
     LOG.error("Unable to configure routes properly", e);
   }
 
+  public static void staleRoutesIndexEntry(String className) {
+    LOG.info("Ignoring {}, listed in a routes index but not found", className);
+  }
+
   private static interface LogsImplementation {
     void info(String message);
 
@@ -17,19 +17,328 @@ package net.codestory.http.misc;
 
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
 import java.util.function.*;
 
+// Bounded cache with a segmented LRU policy.
+//
+// New entries go to a probation segment and are promoted to a protected segment
+// when they are read again, so that a burst of one-off keys can only evict other
+// one-off keys. Entries can be weighted, for example by their size in bytes, and
+// can expire after a given time. Values recognized as negative, like a not found
+// marker, can be held in a separate and smaller cache so that they never evict
+// positive entries.
+//
+// Values are computed outside of any lock. Two threads missing the same key at
+// the same time may both compute it, the first one to finish wins.
+//
 public class Cache<K, V> implements Function<K, V> {
+  public static final long DEFAULT_MAXIMUM_WEIGHT = 10_000;
+
+  private static final int PROBATION_PERCENT = 20;
+
   private final Function<K, V> delegate;
-  private final Map<K, V> keyValues;
+  private final long maximumWeight;
+  private final ToIntBiFunction<K, V> weigher;
+  private final long expireAfterWriteNanos;
+  private final LongSupplier ticker;
+  private final Predicate<V> isNegative;
+  private final Cache<K, V> negativeCache;
+
+  private final Map<K, Node<K, V>> nodes;
+  private final Lock policyLock;
+  private final Node<K, V> probation;
+  private final Node<K, V> protectedSegment;
+  private final LongAdder hits;
+  private final LongAdder misses;
+  private final LongAdder evictions;
+  private long probationWeight;
+  private long protectedWeight;
 
   public Cache(Function<K, V> delegate) {
+    this(delegate, DEFAULT_MAXIMUM_WEIGHT, (key, value) -> 1, 0L, System::nanoTime, null, 0L);
+  }
+
+  private Cache(Function<K, V> delegate, long maximumWeight, ToIntBiFunction<K, V> weigher, long expireAfterWriteNanos, LongSupplier ticker, Predicate<V> isNegative, long negativeMaximumWeight) {
     this.delegate = delegate;
-    this.keyValues = new ConcurrentHashMap<>();
+    this.maximumWeight = maximumWeight;
+    this.weigher = weigher;
+    this.expireAfterWriteNanos = expireAfterWriteNanos;
+    this.ticker = ticker;
+    this.isNegative = isNegative;
+    this.negativeCache = (isNegative == null) ? null : new Cache<>(delegate, negativeMaximumWeight, (key, value) -> 1, expireAfterWriteNanos, ticker, null, 0L);
+    this.nodes = new ConcurrentHashMap<>();
+    this.policyLock = new ReentrantLock();
+    this.probation = Node.sentinel();
+    this.protectedSegment = Node.sentinel();
+    this.hits = new LongAdder();
+    this.misses = new LongAdder();
+    this.evictions = new LongAdder();
+  }
+
+  // configuration
+
+  public Cache<K, V> withMaximumSize(long maximumSize) {
+    return new Cache<>(delegate, maximumSize, (key, value) -> 1, expireAfterWriteNanos, ticker, isNegative, negativeMaximumWeight());
+  }
+
+  public Cache<K, V> withMaximumWeight(long newMaximumWeight, ToIntBiFunction<K, V> newWeigher) {
+    return new Cache<>(delegate, newMaximumWeight, newWeigher, expireAfterWriteNanos, ticker, isNegative, negativeMaximumWeight());
+  }
+
+  public Cache<K, V> withExpireAfterWrite(long duration, TimeUnit unit) {
+    return new Cache<>(delegate, maximumWeight, weigher, unit.toNanos(duration), ticker, isNegative, negativeMaximumWeight());
+  }
+
+  public Cache<K, V> withNegativeCache(Predicate<V> newIsNegative, long maximumSize) {
+    return new Cache<>(delegate, maximumWeight, weigher, expireAfterWriteNanos, ticker, newIsNegative, maximumSize);
+  }
+
+  Cache<K, V> withTicker(LongSupplier newTicker) {
+    return new Cache<>(delegate, maximumWeight, weigher, expireAfterWriteNanos, newTicker, isNegative, negativeMaximumWeight());
+  }
+
+  private long negativeMaximumWeight() {
+    return (negativeCache == null) ? 0L : negativeCache.maximumWeight;
   }
 
+  // access
+
   @Override
   public V apply(K key) {
-    return keyValues.computeIfAbsent(key, delegate);
+    V value = getIfPresent(key);
+    if (value != null) {
+      return value;
+    }
+    if (negativeCache != null) {
+      value = negativeCache.getIfPresent(key);
+      if (value != null) {
+        return value;
+      }
+    }
+
+    misses.increment();
+    value = delegate.apply(key);
+    if (value == null) {
+      return null;
+    }
+
+    if ((negativeCache != null) && isNegative.test(value)) {
+      return negativeCache.put(key, value);
+    }
+    return put(key, value);
+  }
+
+  public V getIfPresent(K key) {
+    Node<K, V> node = nodes.get(key);
+    if (node == null) {
+      return null;
+    }
+
+    if (isExpired(node)) {
+      remove(node);
+      return null;
+    }
+
+    hits.increment();
+
+    // Recency is best effort: skip it rather than wait for the lock
+    if (policyLock.tryLock()) {
+      try {
+        onAccess(node);
+      } finally {
+        policyLock.unlock();
+      }
+    }
+
+    return node.value;
+  }
+
+  public void invalidateAll() {
+    policyLock.lock();
+    try {
+      while (probation.next != probation) {
+        unlink(probation.next);
+      }
+      while (protectedSegment.next != protectedSegment) {
+        unlink(protectedSegment.next);
+      }
+      nodes.clear();
+    } finally {
+      policyLock.unlock();
+    }
+
+    if (negativeCache != null) {
+      negativeCache.invalidateAll();
+    }
+  }
+
+  // statistics
+
+  public long hitCount() {
+    return hits.sum() + ((negativeCache == null) ? 0L : negativeCache.hitCount());
+  }
+
+  public long missCount() {
+    return misses.sum();
+  }
+
+  public long evictionCount() {
+    return evictions.sum() + ((negativeCache == null) ? 0L : negativeCache.evictionCount());
+  }
+
+  public int size() {
+    return nodes.size();
+  }
+
+  public int negativeSize() {
+    return (negativeCache == null) ? 0 : negativeCache.size();
+  }
+
+  public long weight() {
+    policyLock.lock();
+    try {
+      return probationWeight + protectedWeight;
+    } finally {
+      policyLock.unlock();
+    }
+  }
+
+  // policy
+
+  private V put(K key, V value) {
+    int weight = weigher.applyAsInt(key, value);
+    if (weight > maximumWeight) {
+      return value;
+    }
+
+    Node<K, V> node = new Node<>(key, value, weight, ticker.getAsLong());
+    Node<K, V> previous = nodes.putIfAbsent(key, node);
+    if (previous != null) {
+      return previous.value;
+    }
+
+    policyLock.lock();
+    try {
+      if (nodes.get(key) == node) {
+        node.linkAfter(probation);
+        probationWeight += weight;
+        evict();
+      }
+    } finally {
+      policyLock.unlock();
+    }
+
+    return value;
+  }
+
+  private void onAccess(Node<K, V> node) {
+    if (!node.isLinked()) {
+      return;
+    }
+
+    node.unlink();
+    if (node.inProtected) {
+      node.linkAfter(protectedSegment);
+      return;
+    }
+
+    probationWeight -= node.weight;
+    protectedWeight += node.weight;
+    node.inProtected = true;
+    node.linkAfter(protectedSegment);
+
+    // Demote the least recently used protected entries
+    long maximumProtectedWeight = maximumWeight - (maximumWeight * PROBATION_PERCENT / 100);
+    while (protectedWeight > maximumProtectedWeight) {
+      Node<K, V> demoted = protectedSegment.previous;
+      demoted.unlink();
+      demoted.inProtected = false;
+      demoted.linkAfter(probation);
+      protectedWeight -= demoted.weight;
+      probationWeight += demoted.weight;
+    }
+  }
+
+  private void evict() {
+    while (probationWeight + protectedWeight > maximumWeight) {
+      Node<K, V> victim = (probation.previous != probation) ? probation.previous : protectedSegment.previous;
+      unlink(victim);
+      nodes.remove(victim.key, victim);
+      evictions.increment();
+    }
+  }
+
+  private void remove(Node<K, V> node) {
+    if (nodes.remove(node.key, node)) {
+      policyLock.lock();
+      try {
+        unlink(node);
+      } finally {
+        policyLock.unlock();
+      }
+    }
+  }
+
+  private void unlink(Node<K, V> node) {
+    if (!node.isLinked()) {
+      return;
+    }
+
+    node.unlink();
+    if (node.inProtected) {
+      protectedWeight -= node.weight;
+    } else {
+      probationWeight -= node.weight;
+    }
+  }
+
+  private boolean isExpired(Node<K, V> node) {
+    return (expireAfterWriteNanos > 0L) && (ticker.getAsLong() - node.writeTime >= expireAfterWriteNanos);
+  }
+
+  // Doubly linked list node. Links are guarded by the policy lock.
+  //
+  private static class Node<K, V> {
+    private final K key;
+    private final V value;
+    private final int weight;
+    private final long writeTime;
+    private Node<K, V> previous;
+    private Node<K, V> next;
+    private boolean inProtected;
+
+    private Node(K key, V value, int weight, long writeTime) {
+      this.key = key;
+      this.value = value;
+      this.weight = weight;
+      this.writeTime = writeTime;
+    }
+
+    private static <K, V> Node<K, V> sentinel() {
+      Node<K, V> sentinel = new Node<>(null, null, 0, 0L);
+      sentinel.previous = sentinel;
+      sentinel.next = sentinel;
+      return sentinel;
+    }
+
+    private boolean isLinked() {
+      return next != null;
+    }
+
+    private void linkAfter(Node<K, V> head) {
+      previous = head;
+      next = head.next;
+      head.next.previous = this;
+      head.next = this;
+    }
+
+    private void unlink() {
+      previous.next = next;
+      next.previous = previous;
+      previous = null;
+      next = null;
+    }
   }
 }
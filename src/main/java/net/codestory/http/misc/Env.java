@@ -23,8 +23,12 @@ import java.io.Serializable;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.function.Supplier;
 
+import net.codestory.http.payload.Compression;
+import net.codestory.http.payload.ETagStrategy;
+import net.codestory.http.payload.ETags;
 import net.codestory.http.reload.MasterFolderWatch;
 
 public class Env implements Serializable {
@@ -36,6 +40,8 @@ public class Env implements Serializable {
   private final boolean liveReloadServer;
   private final boolean injectLiveReloadScript;
   private final boolean diskCache;
+  private final Compression compression;
+  private final ETagStrategy etagStrategy;
   private final Supplier<MasterFolderWatch> folderWatch;
 
   public Env() {
@@ -47,11 +53,15 @@ public class Env implements Serializable {
       !getBoolean("http.disable.gzip", false),
       getBoolean("http.livereload.server", true),
       getBoolean("http.livereload.script", true),
-      getBoolean("http.cache.disk", true)
+      getBoolean("http.cache.disk", true),
+      new Compression()
+        .withMinimumSize(getInt("http.gzip.minimum.size", Compression.DEFAULT_MINIMUM_SIZE))
+        .withLevel(getInt("http.gzip.level", Compression.DEFAULT_LEVEL)),
+      ETags.valueOf(get("http.etag", ETags.MD5.name()).toUpperCase(Locale.ENGLISH))
     );
   }
 
-  private Env(File workingDir, boolean prodMode, boolean classPath, boolean filesystem, boolean gzip, boolean liveReloadServer, boolean injectLiveReloadScript, boolean diskCache) {
+  private Env(File workingDir, boolean prodMode, boolean classPath, boolean filesystem, boolean gzip, boolean liveReloadServer, boolean injectLiveReloadScript, boolean diskCache, Compression compression, ETagStrategy etagStrategy) {
     this.workingDir = workingDir;
     this.prodMode = prodMode;
     this.classPath = classPath;
@@ -60,49 +70,59 @@ public class Env implements Serializable {
     this.liveReloadServer = liveReloadServer;
     this.injectLiveReloadScript = injectLiveReloadScript;
     this.diskCache = diskCache;
+    this.compression = compression;
+    this.etagStrategy = etagStrategy;
     this.folderWatch = memoize(() -> new MasterFolderWatch(this));
   }
 
   // helper factories
 
   public static Env prod() {
-    return new Env(new File("."), true, true, true, true, false, false, true);
+    return new Env(new File("."), true, true, true, true, false, false, true, new Compression(), ETags.MD5);
   }
 
   public static Env dev() {
-    return new Env(new File("."), false, true, true, false, true, true, true);
+    return new Env(new File("."), false, true, true, false, true, true, true, new Compression(), ETags.MD5);
   }
 
   public Env withWorkingDir(File newWorkingDir) {
-    return new Env(newWorkingDir, prodMode, classPath, filesystem, gzip, liveReloadServer, injectLiveReloadScript, diskCache);
+    return new Env(newWorkingDir, prodMode, classPath, filesystem, gzip, liveReloadServer, injectLiveReloadScript, diskCache, compression, etagStrategy);
   }
 
   public Env withProdMode(boolean newProdMode) {
-    return new Env(workingDir, newProdMode, classPath, filesystem, gzip, liveReloadServer, injectLiveReloadScript, diskCache);
+    return new Env(workingDir, newProdMode, classPath, filesystem, gzip, liveReloadServer, injectLiveReloadScript, diskCache, compression, etagStrategy);
   }
 
   public Env withClassPath(boolean shouldScanCassPath) {
-    return new Env(workingDir, prodMode, shouldScanCassPath, filesystem, gzip, liveReloadServer, injectLiveReloadScript, diskCache);
+    return new Env(workingDir, prodMode, shouldScanCassPath, filesystem, gzip, liveReloadServer, injectLiveReloadScript, diskCache, compression, etagStrategy);
   }
 
   public Env withFilesystem(boolean shouldScanFilesystem) {
-    return new Env(workingDir, prodMode, classPath, shouldScanFilesystem, gzip, liveReloadServer, injectLiveReloadScript, diskCache);
+    return new Env(workingDir, prodMode, classPath, shouldScanFilesystem, gzip, liveReloadServer, injectLiveReloadScript, diskCache, compression, etagStrategy);
   }
 
   public Env withGzip(boolean shouldGzipResponse) {
-    return new Env(workingDir, prodMode, classPath, filesystem, shouldGzipResponse, liveReloadServer, injectLiveReloadScript, diskCache);
+    return new Env(workingDir, prodMode, classPath, filesystem, shouldGzipResponse, liveReloadServer, injectLiveReloadScript, diskCache, compression, etagStrategy);
   }
 
   public Env withLiveReloadServer(boolean shouldStartLiveReloadServer) {
-    return new Env(workingDir, prodMode, classPath, filesystem, gzip, shouldStartLiveReloadServer, injectLiveReloadScript, diskCache);
+    return new Env(workingDir, prodMode, classPath, filesystem, gzip, shouldStartLiveReloadServer, injectLiveReloadScript, diskCache, compression, etagStrategy);
   }
 
   public Env withInjectLiveReloadScript(boolean shouldInjectLiveReloadScript) {
-    return new Env(workingDir, prodMode, classPath, filesystem, gzip, liveReloadServer, shouldInjectLiveReloadScript, diskCache);
+    return new Env(workingDir, prodMode, classPath, filesystem, gzip, liveReloadServer, shouldInjectLiveReloadScript, diskCache, compression, etagStrategy);
   }
 
   public Env withDiskCache(boolean shouldUseDiskCache) {
-    return new Env(workingDir, prodMode, classPath, filesystem, gzip, liveReloadServer, injectLiveReloadScript, shouldUseDiskCache);
+    return new Env(workingDir, prodMode, classPath, filesystem, gzip, liveReloadServer, injectLiveReloadScript, shouldUseDiskCache, compression, etagStrategy);
+  }
+
+  public Env withCompression(Compression newCompression) {
+    return new Env(workingDir, prodMode, classPath, filesystem, gzip, liveReloadServer, injectLiveReloadScript, diskCache, newCompression, etagStrategy);
+  }
+
+  public Env withETagStrategy(ETagStrategy newETagStrategy) {
+    return new Env(workingDir, prodMode, classPath, filesystem, gzip, liveReloadServer, injectLiveReloadScript, diskCache, compression, newETagStrategy);
   }
 
   //
@@ -138,6 +158,12 @@ public class Env implements Serializable {
     return getInt("PORT", port);
   }
 
+  // Folder where classpath scan results are kept between restarts, or null
+  public File scanIndexFolder() {
+    String folder = get("http.scan.index");
+    return (folder == null) ? null : new File(folder);
+  }
+
   public boolean classPath() {
     return classPath;
   }
@@ -151,6 +177,14 @@ public class Env implements Serializable {
     return gzip;
   }
 
+  public Compression compression() {
+    return compression;
+  }
+
+  public ETagStrategy etagStrategy() {
+    return etagStrategy;
+  }
+
   public boolean liveReloadServer() {
     return liveReloadServer;
   }
@@ -168,6 +202,11 @@ public class Env implements Serializable {
     return (env != null) ? env : System.getProperty(propertyName);
   }
 
+  private static String get(String propertyName, String defaultValue) {
+    String value = get(propertyName);
+    return (value == null) ? defaultValue : value;
+  }
+
   private static boolean getBoolean(String propertyName, boolean defaultValue) {
     String value = get(propertyName);
     return (value == null) ? defaultValue : Boolean.parseBoolean(value);
@@ -18,15 +18,20 @@ package net.codestory.http.misc;
 import java.security.*;
 
 public class Md5 {
+  // MessageDigest.getInstance() looks up the security providers each time
+  private static final ThreadLocal<MessageDigest> DIGESTS = ThreadLocal.withInitial(() -> {
+    try {
+      return MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("Unable to compute md5", e);
+    }
+  });
+
   private Md5() {
     // Static class
   }
 
   public static String of(byte[] data) {
-    try {
-      return Hexa.toHex(MessageDigest.getInstance("MD5").digest(data));
-    } catch (NoSuchAlgorithmException e) {
-      throw new IllegalStateException("Unable to compute md5", e);
-    }
+    return Hexa.toHex(DIGESTS.get().digest(data));
   }
 }
@@ -0,0 +1,120 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.misc;
+
+import static net.codestory.http.misc.MemoizingSupplier.memoize;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+import java.util.regex.*;
+
+import net.codestory.http.io.*;
+import net.codestory.http.payload.*;
+
+import org.webjars.WebJarAssetLocator;
+
+// Index of every webjar file found on the classpath, built once and shared
+// by the webjars route and the webjar handlebars helper. Which of the minified
+// or plain version of a file is served is also resolved once per mode.
+// Files are read on first request and then served from memory.
+//
+public class WebJarIndex {
+  private static final String RESOURCES = "META-INF/resources";
+  private static final Supplier<WebJarIndex> SHARED = memoize(() -> new WebJarIndex(Thread.currentThread().getContextClassLoader()));
+
+  private final SortedMap<String, String> fullPathIndex;
+  private final Set<String> uris;
+  private final Supplier<Map<String, String>> minifiedFirst;
+  private final Supplier<Map<String, String>> plainFirst;
+  private final Map<String, CompressibleBytes> contents;
+
+  WebJarIndex(ClassLoader classLoader) {
+    this.fullPathIndex = WebJarAssetLocator.getFullPathIndex(Pattern.compile(".*"), classLoader);
+    this.uris = new TreeSet<>();
+    this.fullPathIndex.values().forEach(fullPath -> uris.add(fullPath.substring(RESOURCES.length())));
+    this.minifiedFirst = memoize(() -> resolveAll(true));
+    this.plainFirst = memoize(() -> resolveAll(false));
+    this.contents = new ConcurrentHashMap<>();
+  }
+
+  public static WebJarIndex shared() {
+    return SHARED.get();
+  }
+
+  public WebJarAssetLocator locator() {
+    return new WebJarAssetLocator(fullPathIndex);
+  }
+
+  public Set<String> uris() {
+    return uris;
+  }
+
+  // Uri of the file to serve for a request, or null
+  public String resolve(String uri, boolean useMinifiedVersions) {
+    return (useMinifiedVersions ? minifiedFirst : plainFirst).get().get(uri);
+  }
+
+  public CompressibleBytes content(String uri) {
+    return contents.computeIfAbsent(uri, WebJarIndex::read);
+  }
+
+  private Map<String, String> resolveAll(boolean useMinifiedVersions) {
+    Map<String, String> resolved = new HashMap<>();
+    for (String uri : uris) {
+      for (String alias : new String[]{uri, minified(uri), notMinified(uri)}) {
+        resolved.computeIfAbsent(alias, key -> resolve(key, useMinifiedVersions, uris));
+      }
+    }
+    return resolved;
+  }
+
+  private static String resolve(String uri, boolean useMinifiedVersions, Set<String> uris) {
+    String minified = minified(uri);
+    String notMinified = notMinified(uri);
+
+    String found;
+    if (useMinifiedVersions) {
+      found = uris.contains(minified) ? minified : notMinified;
+    } else {
+      found = uris.contains(notMinified) ? notMinified : minified;
+    }
+    return uris.contains(found) ? found : null;
+  }
+
+  private static CompressibleBytes read(String uri) {
+    URL url = ClassPaths.getResource(RESOURCES + uri);
+    if (url == null) {
+      throw new IllegalArgumentException("Unknown webjar file " + uri);
+    }
+
+    try (InputStream stream = url.openStream()) {
+      return new CompressibleBytes(uri, InputStreams.readBytes(stream));
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to read url:" + url, e);
+    }
+  }
+
+  private static String minified(String path) {
+    return path.contains(".min.") ? path : path.replace(".js", ".min.js").replace(".css", ".min.css");
+  }
+
+  private static String notMinified(String path) {
+    return path.replace(".min.", ".");
+  }
+}
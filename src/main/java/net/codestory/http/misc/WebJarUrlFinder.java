@@ -27,25 +27,10 @@ public class WebJarUrlFinder {
   }
 
   public URL url(String path) {
-    URL urlMinified = getResource(minified(path));
-    URL urlNotMinified = getResource(notMinified(path));
-
-    if (useMinifiedVersions) {
-      return (urlMinified != null) ? urlMinified : urlNotMinified;
-    } else {
-      return (urlNotMinified != null) ? urlNotMinified : urlMinified;
+    String uri = WebJarIndex.shared().resolve(path, useMinifiedVersions);
+    if (uri == null) {
+      return null;
     }
-  }
-
-  private static URL getResource(String uri) {
     return ClassPaths.getResource("META-INF/resources" + uri);
   }
-
-  private static String minified(String path) {
-    return path.contains(".min.") ? path : path.replace(".js", ".min.js").replace(".css", ".min.css");
-  }
-
-  private static String notMinified(String path) {
-    return path.replace(".min.", ".");
-  }
 }
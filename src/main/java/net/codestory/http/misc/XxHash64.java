@@ -0,0 +1,101 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.misc;
+
+// xxHash64 with a zero seed, see https://github.com/Cyan4973/xxHash
+//
+public class XxHash64 {
+  private static final long PRIME1 = 0x9E3779B185EBCA87L;
+  private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+  private static final long PRIME3 = 0x165667B19E3779F9L;
+  private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+  private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+  private XxHash64() {
+    // Static class
+  }
+
+  public static long hash(byte[] data) {
+    return hash(data, 0, data.length);
+  }
+
+  public static long hash(byte[] data, int offset, int length) {
+    int index = offset;
+    int end = offset + length;
+
+    long hash;
+    if (length >= 32) {
+      long v1 = PRIME1 + PRIME2;
+      long v2 = PRIME2;
+      long v3 = 0;
+      long v4 = -PRIME1;
+
+      for (int limit = end - 32; index <= limit; index += 32) {
+        v1 = round(v1, readLong(data, index));
+        v2 = round(v2, readLong(data, index + 8));
+        v3 = round(v3, readLong(data, index + 16));
+        v4 = round(v4, readLong(data, index + 24));
+      }
+
+      hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+      hash = mergeRound(hash, v1);
+      hash = mergeRound(hash, v2);
+      hash = mergeRound(hash, v3);
+      hash = mergeRound(hash, v4);
+    } else {
+      hash = PRIME5;
+    }
+
+    hash += length;
+
+    for (; index <= end - 8; index += 8) {
+      hash ^= round(0, readLong(data, index));
+      hash = Long.rotateLeft(hash, 27) * PRIME1 + PRIME4;
+    }
+    if (index <= end - 4) {
+      hash ^= (readInt(data, index) & 0xFFFFFFFFL) * PRIME1;
+      hash = Long.rotateLeft(hash, 23) * PRIME2 + PRIME3;
+      index += 4;
+    }
+    for (; index < end; index++) {
+      hash ^= (data[index] & 0xFFL) * PRIME5;
+      hash = Long.rotateLeft(hash, 11) * PRIME1;
+    }
+
+    hash ^= hash >>> 33;
+    hash *= PRIME2;
+    hash ^= hash >>> 29;
+    hash *= PRIME3;
+    hash ^= hash >>> 32;
+    return hash;
+  }
+
+  private static long round(long accumulator, long input) {
+    return Long.rotateLeft(accumulator + input * PRIME2, 31) * PRIME1;
+  }
+
+  private static long mergeRound(long hash, long value) {
+    return (hash ^ round(0, value)) * PRIME1 + PRIME4;
+  }
+
+  private static long readLong(byte[] data, int index) {
+    return (readInt(data, index) & 0xFFFFFFFFL) | ((long) readInt(data, index + 4) << 32);
+  }
+
+  private static int readInt(byte[] data, int index) {
+    return (data[index] & 0xFF) | ((data[index + 1] & 0xFF) << 8) | ((data[index + 2] & 0xFF) << 16) | ((data[index + 3] & 0xFF) << 24);
+  }
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.payload;
+
+import java.util.*;
+
+// A range of bytes, as requested by a Range header, resolved against the
+// length of the content.
+//
+class ByteRange {
+  static final String UNIT = "bytes";
+  static final int MAX_RANGES = 16;
+
+  final long start;
+  final long end;
+
+  ByteRange(long start, long end) {
+    this.start = start;
+    this.end = end;
+  }
+
+  long length() {
+    return end - start + 1;
+  }
+
+  String contentRange(long totalLength) {
+    return UNIT + ' ' + start + '-' + end + '/' + totalLength;
+  }
+
+  // Returns null if the header should be ignored and an empty list if no range is satisfiable
+  //
+  static List<ByteRange> parse(String header, long length) {
+    if ((header == null) || !header.startsWith(UNIT + '=')) {
+      return null;
+    }
+
+    String[] specs = header.substring(UNIT.length() + 1).split(",");
+    if (specs.length > MAX_RANGES) {
+      return null;
+    }
+
+    List<ByteRange> ranges = new ArrayList<>();
+    for (String spec : specs) {
+      String trimmed = spec.trim();
+      int dash = trimmed.indexOf('-');
+      if (dash < 0) {
+        return null;
+      }
+
+      String first = trimmed.substring(0, dash);
+      String last = trimmed.substring(dash + 1);
+
+      long start;
+      long end;
+      try {
+        if (first.isEmpty()) {
+          long suffix = Long.parseLong(last);
+          if (suffix < 0) {
+            return null;
+          }
+          start = Math.max(0, length - suffix);
+          end = length - 1;
+          if (suffix == 0) {
+            continue;
+          }
+        } else {
+          start = Long.parseLong(first);
+          end = last.isEmpty() ? (length - 1) : Math.min(Long.parseLong(last), length - 1);
+          if (!last.isEmpty() && (Long.parseLong(last) < start)) {
+            return null;
+          }
+        }
+      } catch (NumberFormatException e) {
+        return null;
+      }
+
+      if ((start < 0) || (start >= length)) {
+        continue;
+      }
+      ranges.add(new ByteRange(start, end));
+    }
+
+    return ranges;
+  }
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.payload;
+
+import java.io.*;
+
+import net.codestory.http.misc.*;
+
+// Gzipped variants of static contents, so that the same bytes are not
+// compressed again on each request. Keys identify a version of a content:
+// a file with its modification date and size or an entry of a jar. Never
+// an ETag given by the user or the bytes of a route: two routes could share
+// a key.
+//
+class CompressedVariants {
+  static final long MAXIMUM_WEIGHT = 32 * 1024 * 1024;
+  static final long MAXIMUM_CONTENT_SIZE = 1024 * 1024;
+  static final CompressedVariants SHARED = new CompressedVariants(MAXIMUM_WEIGHT);
+
+  private final Cache<Key, byte[]> gzipped;
+
+  CompressedVariants(long maximumWeight) {
+    this.gzipped = new Cache<Key, byte[]>(key -> key.gzip()).withMaximumWeight(maximumWeight, (key, bytes) -> bytes.length);
+  }
+
+  byte[] gzipped(String id, DataSupplier identity, Compression compression) {
+    return gzipped.apply(new Key(id + ';' + compression.level(), identity, compression));
+  }
+
+  private static class Key {
+    private final String id;
+    private DataSupplier identity;
+    private Compression compression;
+
+    private Key(String id, DataSupplier identity, Compression compression) {
+      this.id = id;
+      this.identity = identity;
+      this.compression = compression;
+    }
+
+    private byte[] gzip() {
+      try {
+        return compression.gzip(identity.get());
+      } catch (IOException e) {
+        throw new IllegalStateException("Unable to read " + id, e);
+      } finally {
+        // Don't retain the identity bytes with the cached key
+        identity = null;
+        compression = null;
+      }
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return (other instanceof Key) && id.equals(((Key) other).id);
+    }
+
+    @Override
+    public int hashCode() {
+      return id.hashCode();
+    }
+  }
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.payload;
+
+// Immutable bytes, served many times: the etag and the gzipped variant
+// are computed once, on first use.
+//
+public class CompressibleBytes {
+  private final String name;
+  private final byte[] data;
+
+  private volatile ETag etag;
+  private volatile Gzipped gzipped;
+
+  public CompressibleBytes(String name, byte[] data) {
+    this.name = name;
+    this.data = data;
+  }
+
+  public String name() {
+    return name;
+  }
+
+  public byte[] data() {
+    return data;
+  }
+
+  public String etag() {
+    return etag(ETags.MD5);
+  }
+
+  public String etag(ETagStrategy strategy) {
+    ETag current = etag;
+    if ((current == null) || (current.strategy != strategy)) {
+      etag = current = new ETag(strategy, strategy.of(data));
+    }
+    return current.value;
+  }
+
+  public byte[] gzipped(Compression compression) {
+    Gzipped current = gzipped;
+    if ((current == null) || (current.level != compression.level())) {
+      gzipped = current = new Gzipped(compression.level(), compression.gzip(data));
+    }
+    return current.bytes;
+  }
+
+  private static class ETag {
+    private final ETagStrategy strategy;
+    private final String value;
+
+    private ETag(ETagStrategy strategy, String value) {
+      this.strategy = strategy;
+      this.value = value;
+    }
+  }
+
+  private static class Gzipped {
+    private final int level;
+    private final byte[] bytes;
+
+    private Gzipped(int level, byte[] bytes) {
+      this.level = level;
+      this.bytes = bytes;
+    }
+  }
+}
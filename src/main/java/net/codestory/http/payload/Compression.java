@@ -0,0 +1,131 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.payload;
+
+import static java.util.Arrays.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.*;
+
+// What is gzipped and how. Content types can be exact, like application/json,
+// or cover a whole family, like text/*. Denied types win over allowed types and
+// an empty allow-list allows every type.
+//
+public class Compression implements Serializable {
+  public static final int DEFAULT_MINIMUM_SIZE = 1024;
+  public static final int DEFAULT_LEVEL = 6;
+  public static final List<String> DEFAULT_DENIED_TYPES = asList(
+    "image/gif", "image/jpeg", "image/png", "image/x-icon",
+    "audio/*", "video/*",
+    "application/zip", "application/gzip", "application/pdf", "application/x-font-woff"
+  );
+
+  private final int minimumSize;
+  private final int level;
+  private final List<String> allowedTypes;
+  private final List<String> deniedTypes;
+
+  public Compression() {
+    this(DEFAULT_MINIMUM_SIZE, DEFAULT_LEVEL, Collections.emptyList(), DEFAULT_DENIED_TYPES);
+  }
+
+  private Compression(int minimumSize, int level, List<String> allowedTypes, List<String> deniedTypes) {
+    if ((level < Deflater.NO_COMPRESSION) || (level > Deflater.BEST_COMPRESSION)) {
+      throw new IllegalArgumentException("Invalid compression level " + level);
+    }
+
+    this.minimumSize = minimumSize;
+    this.level = level;
+    this.allowedTypes = allowedTypes;
+    this.deniedTypes = deniedTypes;
+  }
+
+  public Compression withMinimumSize(int newMinimumSize) {
+    return new Compression(newMinimumSize, level, allowedTypes, deniedTypes);
+  }
+
+  public Compression withLevel(int newLevel) {
+    return new Compression(minimumSize, newLevel, allowedTypes, deniedTypes);
+  }
+
+  public Compression withAllowedTypes(String... newAllowedTypes) {
+    return new Compression(minimumSize, level, asList(newAllowedTypes), deniedTypes);
+  }
+
+  public Compression withDeniedTypes(String... newDeniedTypes) {
+    return new Compression(minimumSize, level, allowedTypes, asList(newDeniedTypes));
+  }
+
+  public int minimumSize() {
+    return minimumSize;
+  }
+
+  public int level() {
+    return level;
+  }
+
+  // A negative length means that the length is unknown
+  public boolean shouldCompress(String contentType, long length) {
+    if ((length >= 0) && (length < minimumSize)) {
+      return false;
+    }
+    if (contentType == null) {
+      return allowedTypes.isEmpty();
+    }
+
+    String mediaType = mediaType(contentType);
+    if (matches(deniedTypes, mediaType)) {
+      return false;
+    }
+    return allowedTypes.isEmpty() || matches(allowedTypes, mediaType);
+  }
+
+  public byte[] gzip(byte[] data) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(32, data.length / 2));
+    try (DeflaterOutputStream gzip = gzip(bytes)) {
+      gzip.write(data);
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to gzip", e);
+    }
+    return bytes.toByteArray();
+  }
+
+  // The stream must be finished, or closed, to give its Deflater back to the pool
+  public DeflaterOutputStream gzip(OutputStream output) throws IOException {
+    return gzip(output, false);
+  }
+
+  // With syncFlush, flush() pushes all the bytes compressed so far to the output
+  public DeflaterOutputStream gzip(OutputStream output, boolean syncFlush) throws IOException {
+    return new PooledGzipOutputStream(output, level, syncFlush);
+  }
+
+  private static String mediaType(String contentType) {
+    int semicolon = contentType.indexOf(';');
+    String mediaType = (semicolon < 0) ? contentType : contentType.substring(0, semicolon);
+    return mediaType.trim().toLowerCase(Locale.ENGLISH);
+  }
+
+  private static boolean matches(List<String> types, String mediaType) {
+    for (String type : types) {
+      if (type.endsWith("/*") ? mediaType.startsWith(type.substring(0, type.length() - 1)) : mediaType.equals(type)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,93 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.payload;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.*;
+import java.net.*;
+
+import net.codestory.http.convert.*;
+import net.codestory.http.io.*;
+import net.codestory.http.misc.*;
+import net.codestory.http.types.*;
+
+// Immutable content given to a route at configuration time. Its bytes,
+// ETag and gzipped variant are computed once. Filters still see the
+// original content.
+//
+public class ConstantContent {
+  private final Object content;
+  private final CompressibleBytes bytes;
+
+  public ConstantContent(String uri, Object content, Env env) {
+    this.content = content;
+    this.bytes = new CompressibleBytes(uri, data(content));
+
+    bytes.etag(env.etagStrategy());
+    if (env.gzip() && env.compression().shouldCompress(contentType(content), bytes.data().length)) {
+      bytes.gzipped(env.compression());
+    }
+  }
+
+  public static boolean supports(Object content) {
+    return (content instanceof String)
+      || (content instanceof byte[])
+      || (content instanceof Number)
+      || (content instanceof Boolean)
+      || (content instanceof Character)
+      || (content instanceof Enum<?>)
+      || ((content instanceof URL) && isResource((URL) content));
+  }
+
+  public Payload payload() {
+    return new Payload(content).withPrecomputed(bytes);
+  }
+
+  private static boolean isResource(URL url) {
+    return "file".equals(url.getProtocol()) || "jar".equals(url.getProtocol());
+  }
+
+  private static String contentType(Object content) {
+    if (content instanceof String) {
+      return "text/html;charset=UTF-8";
+    }
+    if (content instanceof byte[]) {
+      return "application/octet-stream";
+    }
+    if (content instanceof URL) {
+      return ContentTypes.get(((URL) content).getFile());
+    }
+    return "application/json;charset=UTF-8";
+  }
+
+  private static byte[] data(Object content) {
+    if (content instanceof String) {
+      return ((String) content).getBytes(UTF_8);
+    }
+    if (content instanceof byte[]) {
+      return ((byte[]) content).clone();
+    }
+    if (content instanceof URL) {
+      try (InputStream stream = ((URL) content).openStream()) {
+        return InputStreams.readBytes(stream);
+      } catch (IOException e) {
+        throw new IllegalStateException("Unable to read url:" + content, e);
+      }
+    }
+    return TypeConvert.toByteArray(content);
+  }
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.payload;
+
+import static net.codestory.http.io.Strings.stripQuotes;
+
+import java.io.*;
+
+import net.codestory.http.misc.*;
+
+public enum ETags implements ETagStrategy {
+  // 64 bits non cryptographic hash of the body
+  FAST_HASH {
+    @Override
+    public String of(byte[] data) {
+      return Long.toHexString(XxHash64.hash(data));
+    }
+  },
+
+  // Md5 of the body
+  MD5 {
+    @Override
+    public String of(byte[] data) {
+      return Md5.of(data);
+    }
+  },
+
+  // W/"size-mtime" for files, weak hash for other bodies
+  WEAK {
+    @Override
+    public String of(byte[] data) {
+      return "W/\"" + FAST_HASH.of(data) + '"';
+    }
+
+    @Override
+    public String of(File file) {
+      return "W/\"" + Long.toHexString(file.length()) + '-' + Long.toHexString(file.lastModified()) + '"';
+    }
+  },
+
+  // No ETag at all
+  NONE {
+    @Override
+    public String of(byte[] data) {
+      return null;
+    }
+
+    @Override
+    public String of(File file) {
+      return null;
+    }
+  };
+
+  public static boolean isWeak(String etag) {
+    return (etag != null) && etag.startsWith("W/");
+  }
+
+  // Weak comparison, as used by If-None-Match
+  //
+  public static boolean matches(String etag, String ifNoneMatch) {
+    if ((etag == null) || (ifNoneMatch == null)) {
+      return false;
+    }
+
+    String opaqueTag = opaqueTag(etag);
+    for (String candidate : ifNoneMatch.split(",")) {
+      if (opaqueTag.equals(opaqueTag(candidate.trim()))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static String opaqueTag(String etag) {
+    return stripQuotes(isWeak(etag) ? etag.substring(2) : etag);
+  }
+}
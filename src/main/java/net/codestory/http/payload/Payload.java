@@ -20,6 +20,7 @@ import static net.codestory.http.constants.HttpStatus.*;
 
 import java.net.*;
 import java.util.*;
+import java.util.function.*;
 
 import net.codestory.http.*;
 import net.codestory.http.convert.*;
@@ -30,6 +31,9 @@ public class Payload {
   private final Map<String, String> headers;
   private final List<Cookie> cookies;
   private int code;
+  private ETagStrategy etagStrategy;
+  private Supplier<String> etagSupplier;
+  private CompressibleBytes precomputed;
 
   public Payload(Object content) {
     this(null, content);
@@ -51,6 +55,9 @@ public class Payload {
       this.code = wrapped.code;
       this.headers = new LinkedHashMap<>(wrapped.headers);
       this.cookies = new ArrayList<>(wrapped.cookies);
+      this.etagStrategy = wrapped.etagStrategy;
+      this.etagSupplier = wrapped.etagSupplier;
+      this.precomputed = wrapped.precomputed;
       return;
     }
 
@@ -144,6 +151,18 @@ public class Payload {
     return this;
   }
 
+  // Overrides the server wide strategy used to compute the ETag of this payload
+  public Payload withETagStrategy(ETagStrategy etagStrategy) {
+    this.etagStrategy = etagStrategy;
+    return this;
+  }
+
+  // Cheap validator, checked against If-None-Match before the content is rendered
+  public Payload withETagSupplier(Supplier<String> etagSupplier) {
+    this.etagSupplier = etagSupplier;
+    return this;
+  }
+
   public String rawContentType() {
     return contentType;
   }
@@ -164,6 +183,24 @@ public class Payload {
     return code;
   }
 
+  // Bytes of the content, computed once for a constant route
+  Payload withPrecomputed(CompressibleBytes precomputed) {
+    this.precomputed = precomputed;
+    return this;
+  }
+
+  CompressibleBytes precomputed() {
+    return precomputed;
+  }
+
+  public ETagStrategy etagStrategy() {
+    return etagStrategy;
+  }
+
+  public Supplier<String> etagSupplier() {
+    return etagSupplier;
+  }
+
   public boolean isSuccess() {
     return (code >= OK) && (code <= SUCCESS_UPPER_CODE);
   }
@@ -16,23 +16,33 @@
 package net.codestory.http.payload;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.READ;
 import static java.util.Objects.requireNonNull;
 import static net.codestory.http.constants.Encodings.GZIP;
+import static net.codestory.http.constants.Headers.ACCEPT;
 import static net.codestory.http.constants.Headers.ACCEPT_ENCODING;
+import static net.codestory.http.constants.Headers.ACCEPT_RANGES;
 import static net.codestory.http.constants.Headers.CACHE_CONTROL;
 import static net.codestory.http.constants.Headers.CONNECTION;
 import static net.codestory.http.constants.Headers.CONTENT_ENCODING;
+import static net.codestory.http.constants.Headers.CONTENT_RANGE;
 import static net.codestory.http.constants.Headers.CONTENT_TYPE;
 import static net.codestory.http.constants.Headers.ETAG;
 import static net.codestory.http.constants.Headers.IF_MODIFIED_SINCE;
 import static net.codestory.http.constants.Headers.IF_NONE_MATCH;
+import static net.codestory.http.constants.Headers.IF_RANGE;
 import static net.codestory.http.constants.Headers.LAST_MODIFIED;
+import static net.codestory.http.constants.Headers.RANGE;
+import static net.codestory.http.constants.Headers.VARY;
 import static net.codestory.http.constants.HttpStatus.CONTINUE;
 import static net.codestory.http.constants.HttpStatus.INTERNAL_SERVER_ERROR;
 import static net.codestory.http.constants.HttpStatus.NOT_FOUND;
 import static net.codestory.http.constants.HttpStatus.NOT_MODIFIED;
 import static net.codestory.http.constants.HttpStatus.NO_CONTENT;
 import static net.codestory.http.constants.HttpStatus.OK;
+import static net.codestory.http.constants.HttpStatus.PARTIAL_CONTENT;
+import static net.codestory.http.constants.HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE;
+import static net.codestory.http.constants.Methods.GET;
 import static net.codestory.http.constants.Methods.HEAD;
 import static net.codestory.http.io.Strings.stripQuotes;
 
@@ -43,13 +53,28 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintStream;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Path;
+import java.time.DateTimeException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
-import java.util.zip.GZIPOutputStream;
+import java.util.stream.StreamSupport;
+import java.util.zip.DeflaterOutputStream;
 
 import net.codestory.http.Request;
 import net.codestory.http.Response;
@@ -65,13 +90,16 @@ import net.codestory.http.io.Resources;
 import net.codestory.http.logs.Logs;
 import net.codestory.http.misc.Dates;
 import net.codestory.http.misc.Env;
-import net.codestory.http.misc.Md5;
+import net.codestory.http.misc.XxHash64;
 import net.codestory.http.templating.Model;
 import net.codestory.http.templating.ModelAndView;
 import net.codestory.http.templating.Site;
 import net.codestory.http.types.ContentTypes;
 
 public class PayloadWriter {
+  protected static final int STREAMED_JSON_MINIMUM_ELEMENTS = 1_000;
+  protected static final String NDJSON = "application/x-ndjson";
+
   protected final Request request;
   protected final Response response;
   protected final Env env;
@@ -154,6 +182,23 @@ public class PayloadWriter {
     response.setHeaders(payload.headers());
     response.setCookies(payload.cookies());
 
+    // A cheap validator answers 304 before the body is even generated
+    Supplier<String> etagSupplier = payload.etagSupplier();
+    if ((etagSupplier == null) && !payload.headers().containsKey(ETAG)) {
+      etagSupplier = templateETag(payload, request.uri());
+    }
+    if ((etagSupplier != null) && payload.isSuccess()) {
+      String etag = etagSupplier.get();
+      if (etag != null) {
+        response.setHeader(ETAG, etag);
+        if (isNotModified(etag)) {
+          response.setStatus(NOT_MODIFIED);
+          return;
+        }
+        payload = new Payload(payload).withHeader(ETAG, etag);
+      }
+    }
+
     long lastModified = getLastModified(payload);
     if (lastModified >= 0) {
       String previousLastModified = stripQuotes(request.header(IF_MODIFIED_SINCE));
@@ -165,7 +210,6 @@ public class PayloadWriter {
     }
 
     int code = payload.code();
-    String contentType = payload.rawContentType();
     Object content = payload.rawContent();
     if (content == null) {
       response.setStatus(code);
@@ -175,8 +219,7 @@ public class PayloadWriter {
 
     String uri = request.uri();
 
-    String contentTypeHeader = (contentType != null) ? contentType : getContentType(content, uri);
-    response.setHeader(CONTENT_TYPE, contentTypeHeader);
+    response.setHeader(CONTENT_TYPE, contentTypeHeader(payload, uri));
     response.setStatus(code);
 
     if (HEAD.equals(request.method()) || (code == NO_CONTENT) || (code == NOT_MODIFIED) || ((code >= CONTINUE) && (code < OK))) {
@@ -191,22 +234,377 @@ public class PayloadWriter {
   }
 
   protected void writeBytes(String uri, Payload payload) throws IOException {
+    if (payload.precomputed() != null) {
+      writeCompressibleBytes(payload, payload.precomputed());
+      return;
+    }
+    if (payload.rawContent() instanceof CompressibleBytes) {
+      writeCompressibleBytes(payload, (CompressibleBytes) payload.rawContent());
+      return;
+    }
+
+    File file = staticFile(payload.rawContent());
+    if (file != null) {
+      writeFile(payload, file);
+      return;
+    }
+
+    if (shouldStreamJson(payload)) {
+      String etag = payload.headers().get(ETAG);
+      if (isNotModified(etag)) {
+        response.setStatus(NOT_MODIFIED);
+        return;
+      }
+      varyOnAcceptEncoding(payload);
+      writeJsonStream(payload, uri);
+      return;
+    }
+
     DataSupplier lazyData = DataSupplier.cache(() -> getData(payload.rawContent(), uri));
 
     String etag = payload.headers().get(ETAG);
     if (etag == null) {
-      etag = etag(lazyData.get());
+      etag = etagStrategy(payload).of(lazyData.get());
     }
 
-    String previousEtag = stripQuotes(request.header(IF_NONE_MATCH));
-    if (etag.equals(previousEtag)) {
+    if (isNotModified(etag)) {
       response.setStatus(NOT_MODIFIED);
       return;
     }
     response.setHeader(ETAG, etag);
 
+    varyOnAcceptEncoding(payload);
+
     byte[] data = lazyData.get();
-    write(data);
+    if (supportsRanges(payload.rawContent())) {
+      response.setHeader(ACCEPT_RANGES, ByteRange.UNIT);
+
+      List<ByteRange> ranges = requestedRanges(payload, etag, data.length);
+      if (ranges != null) {
+        writeRanges(payload, ranges, data.length, (target, start, count) -> writeFully(target, ByteBuffer.wrap(data, (int) start, (int) count)));
+        return;
+      }
+
+      String variant = staticVariant(payload.rawContent());
+      if ((variant != null) && (data.length <= CompressedVariants.MAXIMUM_CONTENT_SIZE) && shouldGzip(contentTypeHeader(payload, uri), data.length)) {
+        writeGzipped(CompressedVariants.SHARED.gzipped(variant, () -> data, env.compression()));
+        return;
+      }
+    }
+
+    write(data, contentTypeHeader(payload, uri));
+  }
+
+  // Json is streamed when there's no need for the whole document: no ETag to
+  // compute or a large collection
+  //
+  protected boolean shouldStreamJson(Payload payload) {
+    Object content = payload.rawContent();
+    if ((payload.precomputed() != null) || (payload.etagSupplier() != null) || !isJson(content)) {
+      return false;
+    }
+
+    return payload.headers().containsKey(ETAG) || (etagStrategy(payload) == ETags.NONE) || isLargeCollection(content);
+  }
+
+  protected boolean isJson(Object content) {
+    return !((content instanceof File) || (content instanceof Path) || (content instanceof SourceFile) || (content instanceof URL)
+      || (content instanceof byte[]) || (content instanceof CompressibleBytes) || (content instanceof String) || (content instanceof CacheEntry)
+      || (content instanceof ModelAndView) || (content instanceof Model));
+  }
+
+  protected boolean isLargeCollection(Object content) {
+    if (content instanceof Collection<?>) {
+      return ((Collection<?>) content).size() >= STREAMED_JSON_MINIMUM_ELEMENTS;
+    }
+    if (content instanceof Map<?, ?>) {
+      return ((Map<?, ?>) content).size() >= STREAMED_JSON_MINIMUM_ELEMENTS;
+    }
+    if (content instanceof Object[]) {
+      return ((Object[]) content).length >= STREAMED_JSON_MINIMUM_ELEMENTS;
+    }
+    return false;
+  }
+
+  // Written without a Content-Length, so the response is chunked
+  //
+  protected void writeJsonStream(Payload payload, String uri) throws IOException {
+    OutputStream output = response.outputStream();
+
+    try {
+      if (shouldGzip(contentTypeHeader(payload, uri), -1)) {
+        response.setHeader(CONTENT_ENCODING, GZIP);
+
+        DeflaterOutputStream gzip = env.compression().gzip(output);
+        try {
+          TypeConvert.writeJson(payload.rawContent(), gzip);
+          gzip.finish();
+        } finally {
+          release(gzip);
+        }
+      } else {
+        TypeConvert.writeJson(payload.rawContent(), output);
+      }
+    } catch (IOException e) {
+      if (!shouldIgnoreError(e)) {
+        throw e;
+      }
+    }
+  }
+
+  protected void writeCompressibleBytes(Payload payload, CompressibleBytes bytes) throws IOException {
+    String etag = payload.headers().get(ETAG);
+    if (etag == null) {
+      etag = bytes.etag(etagStrategy(payload));
+    }
+
+    if (isNotModified(etag)) {
+      response.setStatus(NOT_MODIFIED);
+      return;
+    }
+    response.setHeader(ETAG, etag);
+    response.setHeader(ACCEPT_RANGES, ByteRange.UNIT);
+    varyOnAcceptEncoding(payload);
+
+    byte[] data = bytes.data();
+    List<ByteRange> ranges = requestedRanges(payload, etag, data.length);
+    if (ranges != null) {
+      writeRanges(payload, ranges, data.length, (target, start, count) -> writeFully(target, ByteBuffer.wrap(data, (int) start, (int) count)));
+    } else if (shouldGzip(contentTypeHeader(payload, request.uri()), data.length)) {
+      writeGzipped(bytes.gzipped(env.compression()));
+    } else {
+      writeRaw(bytes.data());
+    }
+  }
+
+  // Static files are sent without being loaded in memory
+  //
+  protected void writeFile(Payload payload, File file) throws IOException {
+    String etag = payload.headers().get(ETAG);
+    if (etag == null) {
+      etag = etagStrategy(payload).of(file);
+    }
+
+    if (isNotModified(etag)) {
+      response.setStatus(NOT_MODIFIED);
+      return;
+    }
+    response.setHeader(ETAG, etag);
+    response.setHeader(ACCEPT_RANGES, ByteRange.UNIT);
+    varyOnAcceptEncoding(payload);
+
+    try (FileChannel channel = FileChannel.open(file.toPath(), READ)) {
+      long size = channel.size();
+
+      List<ByteRange> ranges = requestedRanges(payload, etag, size);
+      File sidecar = shouldGzip() ? gzipSidecar(file) : null;
+      if (ranges != null) {
+        writeRanges(payload, ranges, size, (target, start, count) -> transfer(channel, start, count, target));
+      } else if (sidecar != null) {
+        writeGzipped(sidecar);
+      } else if (shouldGzip(contentTypeHeader(payload, request.uri()), size)) {
+        writeGzipped(file, channel);
+      } else {
+        response.setContentLength(size);
+        transfer(channel, 0, size, response.channel());
+      }
+    } catch (IOException e) {
+      if (!shouldIgnoreError(e)) {
+        throw e;
+      }
+    }
+  }
+
+  // A .gz file next to the file is served if it's up to date, whatever the
+  // compression settings, since it costs nothing to send.
+  //
+  protected File gzipSidecar(File file) {
+    File sidecar = new File(file.getPath() + ".gz");
+    return (sidecar.isFile() && (sidecar.lastModified() >= file.lastModified())) ? sidecar : null;
+  }
+
+  protected void writeGzipped(File sidecar) throws IOException {
+    response.setHeader(CONTENT_ENCODING, GZIP);
+
+    try (FileChannel gzipped = FileChannel.open(sidecar.toPath(), READ)) {
+      long size = gzipped.size();
+      response.setContentLength(size);
+      transfer(gzipped, 0, size, response.channel());
+    }
+  }
+
+  // Small files are compressed once and bigger ones are compressed on the fly.
+  //
+  protected void writeGzipped(File file, FileChannel channel) throws IOException {
+    response.setHeader(CONTENT_ENCODING, GZIP);
+
+    long size = channel.size();
+    if (size <= CompressedVariants.MAXIMUM_CONTENT_SIZE) {
+      byte[] gzipped = CompressedVariants.SHARED.gzipped(file.getAbsolutePath() + ';' + version(file), () -> readFully(channel, size), env.compression());
+      response.setContentLength(gzipped.length);
+      response.outputStream().write(gzipped);
+      return;
+    }
+
+    DeflaterOutputStream gzip = env.compression().gzip(response.outputStream());
+    try {
+      InputStreams.copy(Channels.newInputStream(channel), gzip);
+      gzip.finish();
+    } finally {
+      release(gzip);
+    }
+  }
+
+  // Only static contents share their gzipped variant, identified by where they
+  // are read from and their version. Bytes built by routes are compressed on
+  // each request.
+  //
+  protected String staticVariant(Object content) {
+    File file = null;
+    if (content instanceof Path) {
+      file = resources.fileOnDisk((Path) content);
+    } else if (content instanceof URL) {
+      URL url = (URL) content;
+      if ("jar".equals(url.getProtocol())) {
+        return url.toExternalForm();
+      }
+      if ("file".equals(url.getProtocol())) {
+        file = new File(url.getPath());
+      }
+    }
+
+    return ((file != null) && file.isFile()) ? file.getAbsolutePath() + ';' + version(file) : null;
+  }
+
+  // Gives the Deflater back to the pool, even when the body couldn't be written
+  protected static void release(DeflaterOutputStream gzip) {
+    try {
+      gzip.finish();
+    } catch (IOException e) {
+      // Ignore, the response is already broken
+    }
+  }
+
+  protected void writeGzipped(byte[] gzipped) throws IOException {
+    response.setHeader(CONTENT_ENCODING, GZIP);
+    writeRaw(gzipped);
+  }
+
+  protected void varyOnAcceptEncoding(Payload payload) {
+    if (env.gzip() && env.prodMode()) {
+      String vary = payload.headers().get(VARY);
+      response.setHeader(VARY, (vary == null) ? ACCEPT_ENCODING : vary + ", " + ACCEPT_ENCODING);
+    }
+  }
+
+  protected static byte[] readFully(FileChannel channel, long size) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate((int) size);
+    while (buffer.hasRemaining() && (channel.read(buffer, buffer.position()) >= 0)) {
+      // Keep reading
+    }
+    return buffer.array();
+  }
+
+  // Ranges are checked only once the content is known to be unmodified.
+  // Returns null when the whole content should be sent.
+  //
+  protected List<ByteRange> requestedRanges(Payload payload, String etag, long length) throws IOException {
+    String range = request.header(RANGE);
+    if ((range == null) || (payload.code() != OK) || !GET.equals(request.method())) {
+      return null;
+    }
+
+    String ifRange = request.header(IF_RANGE);
+    if ((ifRange != null) && !isCurrent(ifRange, etag, getLastModified(payload))) {
+      return null;
+    }
+
+    return ByteRange.parse(range, length);
+  }
+
+  protected boolean isCurrent(String ifRange, String etag, long lastModified) {
+    if (ifRange.startsWith("W/")) {
+      return false;
+    }
+
+    try {
+      return (lastModified >= 0) && ((lastModified / 1000) == (Dates.parseRfc1123(ifRange) / 1000));
+    } catch (DateTimeException e) {
+      return stripQuotes(ifRange).equals(etag);
+    }
+  }
+
+  protected void writeRanges(Payload payload, List<ByteRange> ranges, long length, RangeWriter rangeWriter) throws IOException {
+    if (ranges.isEmpty()) {
+      response.setStatus(REQUESTED_RANGE_NOT_SATISFIABLE);
+      response.setHeader(CONTENT_RANGE, ByteRange.UNIT + " */" + length);
+      response.setContentLength(0);
+      return;
+    }
+
+    response.setStatus(PARTIAL_CONTENT);
+
+    if (ranges.size() == 1) {
+      ByteRange range = ranges.get(0);
+      response.setHeader(CONTENT_RANGE, range.contentRange(length));
+      response.setContentLength(range.length());
+      rangeWriter.write(response.channel(), range.start, range.length());
+      return;
+    }
+
+    String boundary = Long.toHexString(ThreadLocalRandom.current().nextLong());
+    String contentType = contentTypeHeader(payload, request.uri());
+
+    List<byte[]> partHeaders = new ArrayList<>();
+    long contentLength = 0;
+    for (ByteRange range : ranges) {
+      byte[] partHeader = ("\r\n--" + boundary + "\r\n" + CONTENT_TYPE + ": " + contentType + "\r\n" + CONTENT_RANGE + ": " + range.contentRange(length) + "\r\n\r\n").getBytes(UTF_8);
+      partHeaders.add(partHeader);
+      contentLength += partHeader.length + range.length();
+    }
+    byte[] end = ("\r\n--" + boundary + "--\r\n").getBytes(UTF_8);
+    contentLength += end.length;
+
+    response.setHeader(CONTENT_TYPE, "multipart/byteranges; boundary=" + boundary);
+    response.setContentLength(contentLength);
+
+    WritableByteChannel target = response.channel();
+    for (int i = 0; i < ranges.size(); i++) {
+      ByteRange range = ranges.get(i);
+      writeFully(target, ByteBuffer.wrap(partHeaders.get(i)));
+      rangeWriter.write(target, range.start, range.length());
+    }
+    writeFully(target, ByteBuffer.wrap(end));
+  }
+
+  protected boolean supportsRanges(Object content) {
+    if ((content instanceof URL) || (content instanceof byte[]) || (content instanceof CacheEntry)) {
+      return true;
+    }
+    if (content instanceof File) {
+      return !compilers.supportsTemplating(((File) content).toPath());
+    }
+    if (content instanceof Path) {
+      return !compilers.supportsTemplating((Path) content);
+    }
+    return false;
+  }
+
+  protected static void transfer(FileChannel channel, long start, long count, WritableByteChannel target) throws IOException {
+    for (long position = start, end = start + count; position < end; ) {
+      position += channel.transferTo(position, end - position, target);
+    }
+  }
+
+  protected static void writeFully(WritableByteChannel target, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      target.write(buffer);
+    }
+  }
+
+  @FunctionalInterface
+  protected interface RangeWriter {
+    void write(WritableByteChannel target, long start, long count) throws IOException;
   }
 
   protected void writeStreamingHeaders() throws IOException {
@@ -214,82 +612,134 @@ public class PayloadWriter {
     response.setHeader(CONNECTION, "keep-alive");
   }
 
+  // Streams are compressed on the fly. Each explicit flush is a SYNC_FLUSH
+  // so that what was written so far reaches the client promptly.
+  //
   protected void streamPayload(String uri, Payload payload) throws IOException {
     writeStreamingHeaders();
+    varyOnAcceptEncoding(payload);
+
+    OutputStream output = response.outputStream();
+    DeflaterOutputStream gzip = null;
+    if (shouldGzip(contentTypeHeader(payload, uri), -1)) {
+      response.setHeader(CONTENT_ENCODING, GZIP);
+      gzip = env.compression().gzip(output, true);
+      output = gzip;
+    }
+
+    try {
+      if ((payload.rawContent() instanceof Stream<?>) || (payload.rawContent() instanceof Iterator<?>)) {
+        writeElements(payload, contentTypeHeader(payload, uri), output);
+      } else if (payload.rawContent() instanceof BufferedReader) {
+        writeBufferedReader(payload, output);
+      } else if (payload.rawContent() instanceof InputStream) {
+        writeInputStream(payload, output);
+      } else if (payload.rawContent() instanceof StreamingOutput) {
+        writeStreamingOutput(payload, output);
+      }
 
-    if (payload.rawContent() instanceof Stream<?>) {
-      writeEventStream(payload);
-    } else if (payload.rawContent() instanceof BufferedReader) {
-      writeBufferedReader(payload);
-    } else if (payload.rawContent() instanceof InputStream) {
-      writeInputStream(payload);
-    } else if (payload.rawContent() instanceof StreamingOutput) {
-      writeStreamingOutput(payload);
+      if (gzip != null) {
+        gzip.finish();
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to stream", e);
+    } finally {
+      if (gzip != null) {
+        release(gzip);
+      }
+      close();
     }
   }
 
-  protected void writeEventStream(Payload payload) throws IOException {
-    PrintStream printStream = new PrintStream(response.outputStream());
+  // Elements are sent one by one, as server-sent events, as a json array or
+  // as newline delimited json
+  //
+  protected void writeElements(Payload payload, String contentType, OutputStream output) throws IOException {
+    try (Stream<?> stream = elements(payload.rawContent())) {
+      if (contentType.startsWith(NDJSON)) {
+        TypeConvert.writeJsonLines(stream.iterator(), output);
+      } else if (contentType.startsWith("application/json")) {
+        TypeConvert.writeJsonArray(stream.iterator(), output);
+      } else {
+        writeEventStream(stream, output);
+      }
+    }
+  }
 
-    try (Stream<?> stream = (Stream<?>) payload.rawContent()) {
-      stream.forEach(item -> {
-        String jsonOrPlainString = (item instanceof String) ? (String) item : TypeConvert.toJson(item);
+  protected static Stream<?> elements(Object content) {
+    if (content instanceof Stream<?>) {
+      return (Stream<?>) content;
+    }
 
-        printStream
-          .append("data: ")
-          .append(jsonOrPlainString.replaceAll("[\n]", "\ndata: "))
-          .append("\n\n")
-          .flush();
-      });
+    Iterator<?> iterator = (Iterator<?>) content;
+    Stream<?> stream = StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false);
+    if (!(iterator instanceof AutoCloseable)) {
+      return stream;
     }
 
-    close();
+    return stream.onClose(() -> {
+      try {
+        ((AutoCloseable) iterator).close();
+      } catch (Exception e) {
+        throw new IllegalStateException("Unable to close iterator", e);
+      }
+    });
+  }
+
+  protected void writeEventStream(Stream<?> stream, OutputStream output) {
+    PrintStream printStream = new PrintStream(output);
+
+    stream.forEach(item -> {
+      String jsonOrPlainString = (item instanceof String) ? (String) item : TypeConvert.toJson(item);
+
+      printStream
+        .append("data: ")
+        .append(jsonOrPlainString.replaceAll("[\n]", "\ndata: "))
+        .append("\n\n")
+        .flush();
+    });
   }
 
-  protected void writeBufferedReader(Payload payload) throws IOException {
+  // Lines are flushed only when the next one is not already available
+  //
+  protected void writeBufferedReader(Payload payload, OutputStream output) throws IOException {
     BufferedReader lines = (BufferedReader) payload.rawContent();
 
-    writeStreamingOutput((output) -> {
-      try (PrintStream printStream = new PrintStream(output, true)) {
-        String line;
-        while (null != (line = lines.readLine())) {
-          printStream.println(line);
-        }
+    PrintStream printStream = new PrintStream(output);
+    String line;
+    while (null != (line = lines.readLine())) {
+      printStream.println(line);
+      if (!lines.ready()) {
+        printStream.flush();
       }
-    });
+    }
+    printStream.flush();
   }
 
-  protected void writeInputStream(Payload payload) throws IOException {
+  protected void writeInputStream(Payload payload, OutputStream output) throws IOException {
     InputStream stream = (InputStream) payload.rawContent();
 
-    writeStreamingOutput((output) -> InputStreams.copy(stream, output));
+    InputStreams.copy(stream, output);
   }
 
-  protected void writeStreamingOutput(Payload payload) throws IOException {
+  protected void writeStreamingOutput(Payload payload, OutputStream output) throws IOException {
     StreamingOutput stream = (StreamingOutput) payload.rawContent();
 
-    writeStreamingOutput(stream);
+    stream.write(output);
   }
 
-  protected void writeStreamingOutput(StreamingOutput stream) throws IOException {
-    OutputStream outputStream = response.outputStream();
-
-    try {
-      stream.write(outputStream);
-      close();
-    } catch (IOException e) {
-      throw new IllegalStateException("Unable to stream", e);
-    }
+  protected void write(byte[] data) throws IOException {
+    write(data, null);
   }
 
-  protected void write(byte[] data) throws IOException {
+  protected void write(byte[] data, String contentType) throws IOException {
     try {
-      if (shouldGzip()) {
-        response.setHeader(CONTENT_ENCODING, GZIP);
+      if (shouldGzip(contentType, data.length)) {
+        byte[] gzipped = env.compression().gzip(data);
 
-        GZIPOutputStream gzip = new GZIPOutputStream(response.outputStream());
-        gzip.write(data);
-        gzip.finish();
+        response.setHeader(CONTENT_ENCODING, GZIP);
+        response.setContentLength(gzipped.length);
+        response.outputStream().write(gzipped);
       } else {
         response.setContentLength(data.length);
         response.outputStream().write(data);
@@ -301,10 +751,25 @@ public class PayloadWriter {
     }
   }
 
+  protected void writeRaw(byte[] data) throws IOException {
+    try {
+      response.setContentLength(data.length);
+      response.outputStream().write(data);
+    } catch (IOException e) {
+      if (!shouldIgnoreError(e)) {
+        throw e;
+      }
+    }
+  }
+
   protected boolean shouldGzip() {
     return env.gzip() && env.prodMode() && request.header(ACCEPT_ENCODING, "").contains(GZIP);
   }
 
+  protected boolean shouldGzip(String contentType, long length) {
+    return shouldGzip() && env.compression().shouldCompress(contentType, length);
+  }
+
   protected boolean shouldIgnoreError(IOException e) {
     Throwable cause = e.getCause();
     if (cause != null) {
@@ -316,12 +781,39 @@ public class PayloadWriter {
     return false;
   }
 
-  protected String etag(byte[] data) {
-    return Md5.of(data);
+  protected ETagStrategy etagStrategy(Payload payload) {
+    ETagStrategy strategy = payload.etagStrategy();
+    return (strategy != null) ? strategy : env.etagStrategy();
+  }
+
+  protected boolean isNotModified(String etag) {
+    return ETags.matches(etag, request.header(IF_NONE_MATCH));
+  }
+
+  protected static String version(File file) {
+    return Long.toHexString(file.lastModified()) + '-' + Long.toHexString(file.length());
+  }
+
+  // A file that is served as is, not rendered as a template
+  protected File staticFile(Object content) {
+    if (content instanceof File) {
+      File file = (File) content;
+      return (file.isFile() && !compilers.supportsTemplating(file.toPath())) ? file : null;
+    }
+    if (content instanceof Path) {
+      Path path = (Path) content;
+      return compilers.supportsTemplating(path) ? null : resources.fileOnDisk(path);
+    }
+    return null;
   }
 
   protected boolean isStream(Object content) {
-    return (content instanceof Stream<?>) || (content instanceof BufferedReader) || (content instanceof InputStream) || (content instanceof StreamingOutput);
+    return (content instanceof Stream<?>) || (content instanceof Iterator<?>) || (content instanceof BufferedReader) || (content instanceof InputStream) || (content instanceof StreamingOutput);
+  }
+
+  protected String contentTypeHeader(Payload payload, String uri) {
+    String contentType = payload.rawContentType();
+    return (contentType != null) ? contentType : getContentType(payload.rawContent(), uri);
   }
 
   protected String getContentType(Object content, String uri) {
@@ -343,6 +835,9 @@ public class PayloadWriter {
     if (content instanceof byte[]) {
       return "application/octet-stream";
     }
+    if (content instanceof CompressibleBytes) {
+      return ContentTypes.get(((CompressibleBytes) content).name());
+    }
     if (content instanceof String) {
       return "text/html;charset=UTF-8";
     }
@@ -358,8 +853,8 @@ public class PayloadWriter {
     if (content instanceof StreamingOutput) {
       return "application/octet-stream";
     }
-    if (content instanceof Stream<?>) {
-      return "text/event-stream;charset=UTF-8";
+    if ((content instanceof Stream<?>) || (content instanceof Iterator<?>)) {
+      return streamedContentType(content);
     }
     if (content instanceof ModelAndView) {
       Path path = resources.findExistingPath(((ModelAndView) content).view());
@@ -374,6 +869,20 @@ public class PayloadWriter {
     return "application/json;charset=UTF-8";
   }
 
+  // A Stream stays a server-sent event source unless the client asks for
+  // json. An Iterator is a json array by default.
+  //
+  protected String streamedContentType(Object content) {
+    String accept = request.header(ACCEPT);
+    if ((accept != null) && accept.contains(NDJSON)) {
+      return NDJSON;
+    }
+    if ((content instanceof Iterator<?>) || ((accept != null) && accept.contains("application/json") && !accept.contains("text/event-stream"))) {
+      return "application/json;charset=UTF-8";
+    }
+    return "text/event-stream;charset=UTF-8";
+  }
+
   protected byte[] getData(Object content, String uri) throws IOException {
     if (content == null) {
       return null;
@@ -393,6 +902,9 @@ public class PayloadWriter {
     if (content instanceof byte[]) {
       return (byte[]) content;
     }
+    if (content instanceof CompressibleBytes) {
+      return ((CompressibleBytes) content).data();
+    }
     if (content instanceof String) {
       return forString((String) content);
     }
@@ -420,14 +932,106 @@ public class PayloadWriter {
     }
 
     Object content = payload.rawContent();
+    if (!(content instanceof File) && !(content instanceof Path)) {
+      return -1;
+    }
+
+    long fileLastModified = (content instanceof File) ? ((File) content).lastModified() : lastModified(content);
+
+    ModelAndView template = template(content, request.uri());
+    if (template == null) {
+      return fileLastModified;
+    }
+    if (compilers.isDynamicView(template.view())) {
+      return -1;
+    }
+
+    // Before its first rendering, only the template itself and the site are known
+    long templateLastModified = templateLastModified(template.view());
+    return (templateLastModified >= 0) ? templateLastModified : Math.max(fileLastModified, site.indexedAt());
+  }
+
+  private long lastModified(Object path) {
+    File file = staticFile(path);
+    return ((file != null) ? file : ((Path) path).toFile()).lastModified();
+  }
+
+  // The view a payload is rendered with, or null if it's not a template
+  protected ModelAndView template(Object content, String uri) {
+    if (content instanceof ModelAndView) {
+      return (ModelAndView) content;
+    }
+    if (content instanceof Model) {
+      return ModelAndView.of(uri, (Model) content);
+    }
     if (content instanceof File) {
-      return ((File) content).lastModified();
+      Path path = ((File) content).toPath();
+      return compilers.supportsTemplating(path) ? ModelAndView.of(Resources.toUnixString(path)) : null;
     }
     if (content instanceof Path) {
-      return ((Path) content).toFile().lastModified();
+      Path path = (Path) content;
+      return compilers.supportsTemplating(path) ? ModelAndView.of(Resources.toUnixString(path)) : null;
+    }
+    return null;
+  }
+
+  // Once a template was rendered, its ETag is derived from the files it read
+  // and the site, without rendering it again.
+  //
+  // Only for templates without a model: handlebars can read a model through
+  // fields and methods that its json doesn't show. Other templates, and the
+  // dynamic ones, are hashed once rendered.
+  //
+  protected Supplier<String> templateETag(Payload payload, String uri) {
+    if (etagStrategy(payload) == ETags.NONE) {
+      return null;
+    }
+
+    Object content = payload.rawContent();
+    if (!(content instanceof File) && !(content instanceof Path)) {
+      return null;
     }
 
-    return -1;
+    ModelAndView template = template(content, uri);
+    if (template == null) {
+      return null;
+    }
+
+    return () -> {
+      Set<Path> dependencies = compilers.viewDependencies(template.view());
+      if (dependencies == null) {
+        return null;
+      }
+
+      StringBuilder version = new StringBuilder(resources.findExistingPath(template.view()) + ";");
+      for (Path dependency : dependencies) {
+        version.append(dependency).append(':').append(resources.lastModified(dependency)).append(';');
+      }
+      for (Path dataFile : site.dataFiles()) {
+        version.append(dataFile).append(':').append(resources.lastModified(dataFile)).append(';');
+      }
+      version.append(site.version());
+
+      return Long.toHexString(XxHash64.hash(version.toString().getBytes(UTF_8)));
+    };
+  }
+
+  // Only a template without a model can be dated by its files and the site
+  //
+  protected long templateLastModified(String view) {
+    Set<Path> dependencies = compilers.viewDependencies(view);
+    if (dependencies == null) {
+      return -1;
+    }
+
+    long lastModified = site.indexedAt();
+    for (Path dependency : dependencies) {
+      lastModified = Math.max(lastModified, resources.lastModified(dependency));
+    }
+    for (Path dataFile : site.dataFiles()) {
+      lastModified = Math.max(lastModified, resources.lastModified(dataFile));
+    }
+    return lastModified;
   }
 
   protected byte[] forString(String value) {
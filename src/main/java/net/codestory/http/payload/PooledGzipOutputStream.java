@@ -0,0 +1,104 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.payload;
+
+import java.io.*;
+import java.util.concurrent.*;
+import java.util.zip.*;
+
+// Same format as GZIPOutputStream, but the native zlib state comes from a
+// pool instead of being allocated for each response.
+//
+class PooledGzipOutputStream extends DeflaterOutputStream {
+  private static final int MAX_POOLED = 64;
+  private static final BlockingQueue<Deflater>[] POOLS = pools();
+  private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+
+  private final int level;
+  private final CRC32 crc;
+  private long length;
+  private boolean released;
+
+  PooledGzipOutputStream(OutputStream output, int level, boolean syncFlush) throws IOException {
+    super(output, take(level), 8192, syncFlush);
+    this.level = level;
+    this.crc = new CRC32();
+    output.write(HEADER);
+  }
+
+  @Override
+  public void write(byte[] bytes, int offset, int count) throws IOException {
+    if (released) {
+      throw new IOException("Stream is already finished");
+    }
+    super.write(bytes, offset, count);
+    crc.update(bytes, offset, count);
+    length += count;
+  }
+
+  @Override
+  public void flush() throws IOException {
+    if (released) {
+      out.flush();
+    } else {
+      super.flush();
+    }
+  }
+
+  @Override
+  public void finish() throws IOException {
+    if (released) {
+      return;
+    }
+
+    try {
+      super.finish();
+      writeInt((int) crc.getValue());
+      writeInt((int) length);
+    } finally {
+      released = true;
+      release(def, level);
+    }
+  }
+
+  private void writeInt(int value) throws IOException {
+    out.write(value & 0xff);
+    out.write((value >> 8) & 0xff);
+    out.write((value >> 16) & 0xff);
+    out.write((value >> 24) & 0xff);
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static BlockingQueue<Deflater>[] pools() {
+    BlockingQueue<Deflater>[] pools = new BlockingQueue[Deflater.BEST_COMPRESSION + 1];
+    for (int level = 0; level < pools.length; level++) {
+      pools[level] = new ArrayBlockingQueue<>(MAX_POOLED);
+    }
+    return pools;
+  }
+
+  private static Deflater take(int level) {
+    Deflater deflater = POOLS[level].poll();
+    return (deflater != null) ? deflater : new Deflater(level, true);
+  }
+
+  private static void release(Deflater deflater, int level) {
+    deflater.reset();
+    if (!POOLS[level].offer(deflater)) {
+      deflater.end();
+    }
+  }
+}
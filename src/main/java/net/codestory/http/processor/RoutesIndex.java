@@ -0,0 +1,99 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.processor;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+
+import net.codestory.http.logs.*;
+
+// Lists, for each jar or classes folder, the classes that RoutesProcessor
+// generated: one Configuration per resource, or the resource itself when
+// it can only be registered through reflection.
+//
+public class RoutesIndex {
+  public static final String LOCATION = "META-INF/fluent-http/resources";
+
+  private RoutesIndex() {
+    // static class
+  }
+
+  public static Set<Class<?>> load(String packageToScan) {
+    return load(classNames(), packageToScan);
+  }
+
+  // A class that was deleted since the index was written is skipped. A class
+  // that fails to load or initialize is an error.
+  //
+  static Set<Class<?>> load(Set<String> classNames, String packageToScan) {
+    Set<Class<?>> types = new LinkedHashSet<>();
+
+    for (String className : classNames) {
+      if (packageToScan.isEmpty() || className.startsWith(packageToScan + ".")) {
+        try {
+          types.add(Class.forName(className));
+        } catch (ClassNotFoundException | NoClassDefFoundError e) {
+          Logs.staleRoutesIndexEntry(className);
+        }
+      }
+    }
+
+    return types;
+  }
+
+  static Set<String> classNames() {
+    Set<String> classNames = new LinkedHashSet<>();
+
+    try {
+      Enumeration<URL> urls = RoutesIndex.class.getClassLoader().getResources(LOCATION);
+      while (urls.hasMoreElements()) {
+        try (InputStream input = urls.nextElement().openStream()) {
+          classNames.addAll(read(input));
+        }
+      }
+    } catch (IOException e) {
+      // Ignore
+    }
+
+    return classNames;
+  }
+
+  static Set<String> read(InputStream input) throws IOException {
+    Set<String> classNames = new LinkedHashSet<>();
+
+    BufferedReader reader = new BufferedReader(new InputStreamReader(input, UTF_8));
+    for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+      String className = line.trim();
+      if (!className.isEmpty() && !className.startsWith("#")) {
+        classNames.add(className);
+      }
+    }
+
+    return classNames;
+  }
+
+  static void write(Set<String> classNames, OutputStream output) throws IOException {
+    Writer writer = new OutputStreamWriter(output, UTF_8);
+    for (String className : classNames) {
+      writer.write(className);
+      writer.write('\n');
+    }
+    writer.flush();
+  }
+}
@@ -0,0 +1,283 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.processor;
+
+import static java.util.stream.Stream.of;
+import static javax.lang.model.element.Modifier.*;
+import static javax.tools.Diagnostic.Kind.*;
+import static javax.tools.StandardLocation.CLASS_OUTPUT;
+import static net.codestory.http.constants.Methods.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.function.*;
+
+import javax.annotation.processing.*;
+import javax.lang.model.*;
+import javax.lang.model.element.*;
+import javax.lang.model.type.*;
+import javax.lang.model.util.*;
+import javax.tools.*;
+
+import net.codestory.http.annotations.*;
+import net.codestory.http.misc.*;
+
+// Generates, for each @Resource class, a Configuration that registers its routes
+// with a lambda calling each method directly. RouteCollection.autoDiscover then
+// reads the generated index instead of loading every class of the package.
+//
+// Resources that the generated code couldn't access, like private nested classes,
+// are listed in the index as is and registered through reflection.
+//
+// Enable with javac -processor net.codestory.http.processor.RoutesProcessor
+//
+@SupportedAnnotationTypes("net.codestory.http.annotations.Resource")
+public class RoutesProcessor extends AbstractProcessor {
+  private final Set<String> indexed = new LinkedHashSet<>();
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    for (Element element : roundEnv.getElementsAnnotatedWith(Resource.class)) {
+      if (element.getKind() == ElementKind.CLASS) {
+        TypeElement type = (TypeElement) element;
+        indexed.add(isAccessible(type) ? generate(type) : binaryName(type));
+      }
+    }
+
+    if (roundEnv.processingOver() && !indexed.isEmpty()) {
+      writeIndex();
+    }
+
+    return false;
+  }
+
+  private String generate(TypeElement type) {
+    String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+    String className = flatName(type) + "_Routes";
+    String qualifiedName = packageName.isEmpty() ? className : packageName + "." + className;
+
+    StringBuilder source = new StringBuilder();
+    if (!packageName.isEmpty()) {
+      source.append("package ").append(packageName).append(";\n\n");
+    }
+    source.append("// Generated by ").append(RoutesProcessor.class.getName()).append(". Do not edit.\n");
+    source.append("@SuppressWarnings({\"unchecked\", \"rawtypes\"})\n");
+    source.append("public class ").append(className).append(" implements net.codestory.http.Configuration {\n");
+    source.append("  @Override\n");
+    source.append("  public void configure(net.codestory.http.routes.Routes routes) {\n");
+    for (String registration : registrations(type)) {
+      source.append("    ").append(registration).append(";\n");
+    }
+    source.append("  }\n");
+    source.append("}\n");
+
+    try (Writer writer = processingEnv.getFiler().createSourceFile(qualifiedName, type).openWriter()) {
+      writer.write(source.toString());
+    } catch (IOException e) {
+      processingEnv.getMessager().printMessage(ERROR, "Unable to generate " + qualifiedName + ": " + e.getMessage(), type);
+    }
+
+    return qualifiedName;
+  }
+
+  private List<String> registrations(TypeElement type) {
+    String classPrefix = Optional.ofNullable(type.getAnnotation(Prefix.class)).map(Prefix::value).orElse("");
+
+    List<String> registrations = new ArrayList<>();
+    for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type))) {
+      if (!method.getModifiers().contains(PUBLIC)) {
+        continue;
+      }
+
+      String invoker = invoker(type, method);
+      String parameterTypes = parameterTypes(method);
+
+      BiConsumer<String, String> register = (httpMethod, uri) -> registrations.add("routes.add(" +
+        literal(httpMethod) + ", " +
+        literal(new UrlConcat().url("", classPrefix, uri)) + ", " +
+        type.getQualifiedName() + ".class, " +
+        invoker + ", " +
+        literal(method.getSimpleName().toString()) +
+        parameterTypes + ")");
+
+      of(method.getAnnotationsByType(Get.class)).forEach(get -> register.accept(GET, get.value()));
+      of(method.getAnnotationsByType(Post.class)).forEach(post -> register.accept(POST, post.value()));
+      of(method.getAnnotationsByType(Put.class)).forEach(put -> register.accept(PUT, put.value()));
+      of(method.getAnnotationsByType(Delete.class)).forEach(delete -> register.accept(DELETE, delete.value()));
+      of(method.getAnnotationsByType(Head.class)).forEach(head -> register.accept(HEAD, head.value()));
+      of(method.getAnnotationsByType(Options.class)).forEach(options -> register.accept(OPTIONS, options.value()));
+    }
+    return registrations;
+  }
+
+  // (resource, arguments) -> ((Type) resource).method((Arg0) arguments[0], ...)
+  private String invoker(TypeElement type, ExecutableElement method) {
+    List<? extends TypeMirror> parameters = ((ExecutableType) processingEnv.getTypeUtils().asMemberOf((DeclaredType) type.asType(), method)).getParameterTypes();
+
+    StringJoiner arguments = new StringJoiner(", ", "(", ")");
+    for (int i = 0; i < parameters.size(); i++) {
+      arguments.add("(" + typeName(parameters.get(i)) + ") arguments[" + i + "]");
+    }
+
+    String target = method.getModifiers().contains(STATIC) ? type.getQualifiedName().toString() : "((" + type.getQualifiedName() + ") resource)";
+    String call = target + "." + method.getSimpleName() + arguments;
+
+    if (method.getReturnType().getKind() == TypeKind.VOID) {
+      return "(resource, arguments) -> { " + call + "; return null; }";
+    }
+    return "(resource, arguments) -> " + call;
+  }
+
+  // Erased parameter types of the declaration, as seen by Class.getMethod()
+  private String parameterTypes(ExecutableElement method) {
+    StringBuilder parameterTypes = new StringBuilder();
+    for (VariableElement parameter : method.getParameters()) {
+      parameterTypes.append(", ").append(typeName(parameter.asType())).append(".class");
+    }
+    return parameterTypes.toString();
+  }
+
+  private String typeName(TypeMirror type) {
+    TypeMirror erased = processingEnv.getTypeUtils().erasure(type);
+    switch (erased.getKind()) {
+      case ARRAY:
+        return typeName(((ArrayType) erased).getComponentType()) + "[]";
+      case DECLARED:
+        return ((TypeElement) ((DeclaredType) erased).asElement()).getQualifiedName().toString();
+      default:
+        return erased.getKind().name().toLowerCase(Locale.ENGLISH);
+    }
+  }
+
+  // The generated code lives in the same package as the resource, so it can use
+  // anything that is not private, or package private in another package.
+  //
+  private boolean isAccessible(TypeElement type) {
+    PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(type);
+    if (!isAccessible(type, packageElement)) {
+      return false;
+    }
+
+    for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type))) {
+      if (method.getModifiers().contains(PUBLIC) && isRoute(method)) {
+        List<TypeMirror> types = new ArrayList<>();
+        types.add(method.getReturnType());
+        method.getParameters().forEach(parameter -> types.add(parameter.asType()));
+        types.addAll(((ExecutableType) processingEnv.getTypeUtils().asMemberOf((DeclaredType) type.asType(), method)).getParameterTypes());
+
+        for (TypeMirror typeMirror : types) {
+          if (!isAccessible(typeMirror, packageElement)) {
+            return false;
+          }
+        }
+      }
+    }
+
+    return true;
+  }
+
+  private boolean isAccessible(TypeMirror type, PackageElement from) {
+    TypeMirror erased = processingEnv.getTypeUtils().erasure(type);
+    if (erased.getKind() == TypeKind.ARRAY) {
+      return isAccessible(((ArrayType) erased).getComponentType(), from);
+    }
+    if (erased.getKind() == TypeKind.DECLARED) {
+      return isAccessible(((DeclaredType) erased).asElement(), from);
+    }
+    return true;
+  }
+
+  private boolean isAccessible(Element element, PackageElement from) {
+    for (Element current = element; current instanceof TypeElement; current = current.getEnclosingElement()) {
+      Set<Modifier> modifiers = current.getModifiers();
+      if (modifiers.contains(PRIVATE)) {
+        return false;
+      }
+      if (!modifiers.contains(PUBLIC) && !processingEnv.getElementUtils().getPackageOf(current).equals(from)) {
+        return false;
+      }
+      if ((current.getEnclosingElement() instanceof TypeElement) && !modifiers.contains(STATIC) && (current.getKind() == ElementKind.CLASS)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isRoute(ExecutableElement method) {
+    return (method.getAnnotationsByType(Get.class).length > 0)
+      || (method.getAnnotationsByType(Post.class).length > 0)
+      || (method.getAnnotationsByType(Put.class).length > 0)
+      || (method.getAnnotationsByType(Delete.class).length > 0)
+      || (method.getAnnotationsByType(Head.class).length > 0)
+      || (method.getAnnotationsByType(Options.class).length > 0);
+  }
+
+  private String binaryName(TypeElement type) {
+    return processingEnv.getElementUtils().getBinaryName(type).toString();
+  }
+
+  private static String flatName(TypeElement type) {
+    String name = type.getSimpleName().toString();
+    for (Element enclosing = type.getEnclosingElement(); enclosing instanceof TypeElement; enclosing = enclosing.getEnclosingElement()) {
+      name = enclosing.getSimpleName() + "_" + name;
+    }
+    return name;
+  }
+
+  private static String literal(String value) {
+    StringBuilder literal = new StringBuilder("\"");
+    for (char c : value.toCharArray()) {
+      switch (c) {
+        case '"':
+          literal.append("\\\"");
+          break;
+        case '\\':
+          literal.append("\\\\");
+          break;
+        case '\n':
+          literal.append("\\n");
+          break;
+        default:
+          literal.append(c);
+      }
+    }
+    return literal.append('"').toString();
+  }
+
+  // Merge with the index of a previous, incremental, compilation
+  private void writeIndex() {
+    Filer filer = processingEnv.getFiler();
+
+    Set<String> classNames = new LinkedHashSet<>();
+    try (InputStream input = filer.getResource(CLASS_OUTPUT, "", RoutesIndex.LOCATION).openInputStream()) {
+      classNames.addAll(RoutesIndex.read(input));
+    } catch (IOException e) {
+      // No previous index
+    }
+    classNames.addAll(indexed);
+
+    try (OutputStream output = filer.createResource(CLASS_OUTPUT, "", RoutesIndex.LOCATION).openOutputStream()) {
+      RoutesIndex.write(classNames, output);
+    } catch (IOException e) {
+      processingEnv.getMessager().printMessage(ERROR, "Unable to write " + RoutesIndex.LOCATION + ": " + e.getMessage());
+    }
+  }
+}
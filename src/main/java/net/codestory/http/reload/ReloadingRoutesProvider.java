@@ -15,50 +15,111 @@
  */
 package net.codestory.http.reload;
 
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
 import net.codestory.http.Configuration;
+import net.codestory.http.compilers.CompilerFacade;
+import net.codestory.http.io.Resources;
 import net.codestory.http.logs.Logs;
 import net.codestory.http.misc.Env;
 import net.codestory.http.routes.RouteCollection;
+import net.codestory.http.templating.Site;
 
+// Serves a volatile snapshot of the routes without locking. When a watched
+// folder changes, a new RouteCollection is configured on a background thread.
+// Until it's published, requests wait for it: live reload tells the browser
+// to refresh as soon as a file changes and it must not get the old routes.
+//
+// Compiled assets outlive the reloads. Their cache is keyed by source, so
+// only the files that changed are compiled again. Each RouteCollection gets
+// its own compilers and templates registries, for extensions to configure
+// without disturbing the requests being served, and its own Site index.
+//
 class ReloadingRoutesProvider implements RoutesProvider {
+  static final long DEBOUNCE_MS = 100;
+
   private final Env env;
   private final Configuration configuration;
-  private final AtomicBoolean dirty;
+  private final Resources resources;
+  private final CompilerFacade compilers;
+  private final AtomicLong changes = new AtomicLong();
+  private final AtomicReference<ScheduledFuture<?>> pendingReload = new AtomicReference<>();
 
-  private RouteCollection routes;
-  private FolderChangeListener folderChangeListener;
+  private volatile RouteCollection routes;
+  private volatile long loadedChanges;
+  private ClassLoader classLoader;
 
   ReloadingRoutesProvider(Env env, Configuration configuration) {
     this.env = env;
     this.configuration = configuration;
-    this.dirty = new AtomicBoolean(true);
+    this.resources = new Resources(env);
+    this.compilers = new CompilerFacade(env, resources);
   }
 
   @Override
-  public synchronized RouteCollection get() {
-    if (dirty.get()) {
-      Logs.reloadingConfiguration();
+  public RouteCollection get() {
+    long loaded = loadedChanges;
+    RouteCollection current = routes;
+    if ((current != null) && (loaded == changes.get())) {
+      return current;
+    }
+    return refresh();
+  }
+
+  private synchronized RouteCollection refresh() {
+    if (routes == null) {
+      classLoader = Thread.currentThread().getContextClassLoader();
+      routes = load();
 
-      routes = new RouteCollection(env);
-      try {
-        routes.configure(configuration);
-      } catch (Exception e) {
-        Logs.unableToConfigureRoutes(e);
+      env.folderWatcher().addListener(this::scheduleReload);
+      env.folderWatcher().ensureStarted();
+    } else {
+      long target = changes.get();
+      if (loadedChanges != target) {
+        Thread thread = Thread.currentThread();
+        ClassLoader previous = thread.getContextClassLoader();
+        thread.setContextClassLoader(classLoader);
+        try {
+          routes = load();
+          loadedChanges = target;
+        } finally {
+          thread.setContextClassLoader(previous);
+        }
+        env.folderWatcher().ensureStarted();
       }
+    }
+    return routes;
+  }
 
-      dirty.set(false);
+  // A burst of changes, like a full recompilation, triggers only one reload
+  private void scheduleReload() {
+    changes.incrementAndGet();
 
-      if (folderChangeListener != null) {
-        env.folderWatcher().removeListener(folderChangeListener);
-      }
-      folderChangeListener = () -> dirty.set(true);
-      env.folderWatcher().addListener(folderChangeListener);
+    ScheduledFuture<?> previous = pendingReload.getAndSet(Reloader.EXECUTOR.schedule(this::refresh, DEBOUNCE_MS, TimeUnit.MILLISECONDS));
+    if (previous != null) {
+      previous.cancel(false);
     }
+  }
 
-    env.folderWatcher().ensureStarted();
+  private RouteCollection load() {
+    Logs.reloadingConfiguration();
 
-    return routes;
+    RouteCollection routeCollection = new RouteCollection(env, resources, new CompilerFacade(env, compilers), new Site(env, resources));
+    try {
+      routeCollection.configure(configuration);
+    } catch (Exception e) {
+      Logs.unableToConfigureRoutes(e);
+    }
+    return routeCollection;
+  }
+
+  // Shared by all the providers, reloads are rare
+  private static class Reloader {
+    private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "routes-reloader");
+      thread.setDaemon(true);
+      return thread;
+    });
   }
 }
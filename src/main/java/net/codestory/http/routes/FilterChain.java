@@ -0,0 +1,181 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.routes;
+
+import static java.lang.Long.numberOfTrailingZeros;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import net.codestory.http.Context;
+import net.codestory.http.filters.Filter;
+import net.codestory.http.payload.Payload;
+
+// Flat chain of up to 64 filters, outermost first.
+//
+// The uri prefixes and methods that filters declare are compiled into bit masks
+// up front: a prefix trie for the uris and a table for the methods. Each request
+// then only visits the filters whose bit is set, and goes straight to the routes
+// when none is.
+//
+class FilterChain implements ContextToPayload {
+  static final int MAX_FILTERS = 64;
+
+  private final Filter[] filters;
+  private final ContextToPayload next;
+  private final long anyUri;
+  private final long anyMethod;
+  private final PrefixNode prefixes;
+  private final Map<String, Long> methods;
+
+  FilterChain(Filter[] filters, ContextToPayload next) {
+    if (filters.length > MAX_FILTERS) {
+      throw new IllegalArgumentException("A filter chain is limited to " + MAX_FILTERS + " filters");
+    }
+
+    this.filters = filters;
+    this.next = next;
+    this.prefixes = new PrefixNode();
+    this.methods = new HashMap<>();
+
+    long anyUriMask = 0L;
+    long anyMethodMask = 0L;
+    for (int i = 0; i < filters.length; i++) {
+      long bit = 1L << i;
+
+      String[] uriPrefixes = filters[i].uriPrefixes();
+      if (uriPrefixes == null) {
+        anyUriMask |= bit;
+      } else {
+        for (String uriPrefix : uriPrefixes) {
+          prefixes.add(uriPrefix, bit);
+        }
+      }
+
+      String[] filterMethods = filters[i].methods();
+      if (filterMethods == null) {
+        anyMethodMask |= bit;
+      } else {
+        for (String method : filterMethods) {
+          methods.merge(upperCase(method), bit, (left, right) -> left | right);
+        }
+      }
+    }
+
+    this.anyUri = anyUriMask;
+    this.anyMethod = anyMethodMask;
+    methods.replaceAll((method, mask) -> mask | anyMethod);
+    for (String method : UserRoutes.KNOWN_METHODS) {
+      methods.putIfAbsent(method, anyMethod);
+    }
+  }
+
+  @Override
+  public Payload get(String uri, Context context) throws Exception {
+    long mask = uriMask(uri) & methodMask(context.method());
+    if (mask == 0L) {
+      return next.get(uri, context);
+    }
+    return apply(0, mask, uri, context);
+  }
+
+  private Payload apply(int from, long mask, String uri, Context context) throws Exception {
+    long remaining = (from < MAX_FILTERS) ? (mask & (-1L << from)) : 0L;
+
+    while (remaining != 0L) {
+      int index = numberOfTrailingZeros(remaining);
+
+      Filter filter = filters[index];
+      if (filter.matches(uri, context)) {
+        return filter.apply(uri, context, () -> apply(index + 1, mask, uri, context));
+      }
+
+      remaining &= remaining - 1;
+    }
+
+    return next.get(uri, context);
+  }
+
+  private long uriMask(String uri) {
+    long mask = anyUri | prefixes.mask;
+
+    PrefixNode node = prefixes;
+    for (int i = 0; i < uri.length(); i++) {
+      node = node.child(uri.charAt(i));
+      if (node == null) {
+        break;
+      }
+      mask |= node.mask;
+    }
+
+    return mask;
+  }
+
+  private long methodMask(String method) {
+    if (method == null) {
+      return anyMethod;
+    }
+
+    Long mask = methods.get(method);
+    if (mask == null) {
+      mask = methods.getOrDefault(upperCase(method), anyMethod);
+    }
+    return mask;
+  }
+
+  private static String upperCase(String method) {
+    return method.toUpperCase(Locale.ENGLISH);
+  }
+
+  private static class PrefixNode {
+    private char[] chars = new char[0];
+    private PrefixNode[] children = new PrefixNode[0];
+    private long mask;
+
+    private void add(String prefix, long bit) {
+      PrefixNode node = this;
+      for (int i = 0; i < prefix.length(); i++) {
+        node = node.childOrCreate(prefix.charAt(i));
+      }
+      node.mask |= bit;
+    }
+
+    private PrefixNode child(char c) {
+      for (int i = 0; i < chars.length; i++) {
+        if (chars[i] == c) {
+          return children[i];
+        }
+      }
+      return null;
+    }
+
+    private PrefixNode childOrCreate(char c) {
+      PrefixNode child = child(c);
+      if (child == null) {
+        child = new PrefixNode();
+
+        int length = chars.length;
+        chars = Arrays.copyOf(chars, length + 1);
+        children = Arrays.copyOf(children, length + 1);
+        chars[length] = c;
+        children[length] = child;
+      }
+      return child;
+    }
+  }
+}
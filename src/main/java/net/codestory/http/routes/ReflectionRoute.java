@@ -15,7 +15,11 @@
  */
 package net.codestory.http.routes;
 
+import static java.lang.invoke.MethodHandles.dropArguments;
+import static java.lang.invoke.MethodType.genericMethodType;
+
 import java.io.*;
+import java.lang.invoke.*;
 import java.lang.reflect.*;
 import java.util.function.*;
 
@@ -25,58 +29,122 @@ import net.codestory.http.convert.*;
 import net.codestory.http.payload.*;
 
 class ReflectionRoute implements AnyRoute {
+  private static final Supplier<Object> BOUND = () -> null;
+
+  // A Context created by an extension can override extract(Type)
+  private static final ClassValue<Boolean> OVERRIDES_EXTRACT = new ClassValue<Boolean>() {
+    @Override
+    protected Boolean computeValue(Class<?> type) {
+      try {
+        return type.getMethod("extract", Type.class).getDeclaringClass() != Context.class;
+      } catch (NoSuchMethodException e) {
+        return false;
+      }
+    }
+  };
+
   private final Supplier<Object> resource;
-  private final Method method;
-  private final MethodAnnotations annotations;
+  private final ResourceInvoker invoker;
+  private final Type[] types;
+  private final Function<String, Object>[] pathConverters;
+  private final Context.Extractor[] extractors;
+  private final String contentType;
+  private final BiFunction<Context, String[], Payload> payload;
 
   ReflectionRoute(Supplier<Object> resource, Method method, MethodAnnotations annotations) {
+    this(resource, invoker(invoker(method)), method, annotations);
+  }
+
+  // The resource is a singleton: bind it to the invoker once and for all
+  ReflectionRoute(Object resource, Method method, MethodAnnotations annotations) {
+    this(BOUND, invoker(dropArguments(invoker(method).bindTo(resource), 0, Object.class)), method, annotations);
+  }
+
+  ReflectionRoute(Supplier<Object> resource, ResourceInvoker invoker, Method method, MethodAnnotations annotations) {
     this.resource = resource;
-    this.method = method;
-    this.annotations = annotations;
+    this.invoker = invoker;
+    this.types = method.getGenericParameterTypes();
+    this.pathConverters = pathConverters(types);
+    this.extractors = extractors(types);
+    this.contentType = findContentType(method);
+    this.payload = annotations.compose(this::invoke);
   }
 
   @Override
   public Object body(Context context, String[] pathParameters) {
-    return annotations.apply(context, ctx -> {
-      try {
-        Object target = resource.get();
-
-        Object[] arguments = convert(ctx, pathParameters, method.getGenericParameterTypes());
-        Object response = invoke(target, method, arguments);
-        Object body = emptyIfNull(response);
-        String contentType = findContentType(method);
-
-        return new Payload(contentType, body);
-      } catch (RuntimeException e) {
-        throw e;
-      } catch (Throwable e) {
-        throw new IllegalStateException("Unable to apply route", e);
-      }
-    });
+    return payload.apply(context, pathParameters);
   }
 
-  static Object[] convert(Context context, String[] pathParameters, Type... types) throws IOException {
-    Object[] converted = new Object[types.length];
+  private Payload invoke(Context context, String[] pathParameters) {
+    try {
+      Object target = resource.get();
+
+      Object[] arguments = arguments(context, pathParameters);
+      Object response = invoker.invoke(target, arguments);
+      Object body = emptyIfNull(response);
+
+      return new Payload(contentType, body);
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new IllegalStateException("Unable to apply route", e);
+    }
+  }
+
+  Object[] arguments(Context context, String[] pathParameters) throws IOException {
+    Object[] arguments = new Object[extractors.length];
 
     // String parameters
     for (int i = 0; i < pathParameters.length; i++) {
-      converted[i] = TypeConvert.convertValue(pathParameters[i], types[i]);
+      arguments[i] = pathConverters[i].apply(pathParameters[i]);
     }
 
     // Other parameters
-    for (int i = pathParameters.length; i < converted.length; i++) {
-      converted[i] = context.extract(types[i]);
+    boolean overridden = OVERRIDES_EXTRACT.get(context.getClass());
+    for (int i = pathParameters.length; i < arguments.length; i++) {
+      arguments[i] = overridden ? context.extract(types[i]) : extractors[i].extract(context);
+    }
+
+    return arguments;
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static Function<String, Object>[] pathConverters(Type[] types) {
+    Function<String, Object>[] converters = new Function[types.length];
+    for (int i = 0; i < types.length; i++) {
+      converters[i] = TypeConvert.converterFromString(types[i]);
     }
+    return converters;
+  }
+
+  private static Context.Extractor[] extractors(Type[] types) {
+    Context.Extractor[] extractors = new Context.Extractor[types.length];
+    for (int i = 0; i < types.length; i++) {
+      extractors[i] = Context.extractor(types[i]);
+    }
+    return extractors;
+  }
 
-    return converted;
+  private static ResourceInvoker invoker(MethodHandle handle) {
+    return (target, arguments) -> (Object) handle.invokeExact(target, arguments);
   }
 
-  private static Object invoke(Object target, Method method, Object[] arguments) throws Throwable {
+  // Creates a (Object target, Object[] arguments) -> Object handle
+  private static MethodHandle invoker(Method method) {
     try {
       method.setAccessible(true);
-      return method.invoke(target, arguments);
-    } catch (InvocationTargetException e) {
-      throw e.getCause();
+
+      MethodHandle handle = MethodHandles.lookup().unreflect(method).asFixedArity();
+      if (Modifier.isStatic(method.getModifiers())) {
+        handle = dropArguments(handle, 0, Object.class);
+      }
+
+      int parameterCount = method.getParameterCount();
+      return handle
+        .asType(genericMethodType(parameterCount + 1))
+        .asSpreader(Object[].class, parameterCount);
+    } catch (IllegalAccessException e) {
+      throw new IllegalArgumentException("Unable to access " + method, e);
     }
   }
 
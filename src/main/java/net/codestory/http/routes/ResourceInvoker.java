@@ -0,0 +1,26 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.routes;
+
+import java.io.*;
+
+// Calls a resource method without reflection. Implemented by the code that
+// RoutesProcessor generates.
+//
+@FunctionalInterface
+public interface ResourceInvoker extends Serializable {
+  Object invoke(Object resource, Object[] arguments) throws Throwable;
+}
@@ -31,8 +31,11 @@ import net.codestory.http.io.ClasspathScanner;
 import net.codestory.http.io.Resources;
 import net.codestory.http.livereload.LiveReloadListener;
 import net.codestory.http.misc.Env;
+import net.codestory.http.payload.ConstantContent;
+import net.codestory.http.payload.ETags;
 import net.codestory.http.payload.Payload;
 import net.codestory.http.payload.PayloadWriter;
+import net.codestory.http.processor.RoutesIndex;
 import net.codestory.http.security.User;
 import net.codestory.http.templating.Site;
 import net.codestory.http.websockets.WebSocketListener;
@@ -42,14 +45,23 @@ import net.codestory.http.websockets.WebSocketSession;
 import java.io.*;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 import static java.util.stream.Stream.of;
 import static net.codestory.http.annotations.AnnotationHelper.parseAnnotations;
+import static net.codestory.http.constants.Headers.ALLOW;
+import static net.codestory.http.constants.Headers.ETAG;
+import static net.codestory.http.constants.Headers.IF_NONE_MATCH;
 import static net.codestory.http.constants.Methods.*;
+import static net.codestory.http.misc.MemoizingSupplier.memoize;
 import static net.codestory.http.payload.Payload.*;
 import static net.codestory.http.routes.UriParser.paramsCount;
 
@@ -62,6 +74,7 @@ public class RouteCollection implements Routes {
   protected final MethodAnnotationsFactory methodAnnotationsFactory;
   protected final RouteSorter routes;
   protected final Deque<Supplier<Filter>> filters;
+  protected final List<Supplier<ConstantContent>> constants;
 
   protected IocAdapter iocAdapter;
   protected Extensions extensions;
@@ -69,13 +82,25 @@ public class RouteCollection implements Routes {
   protected ContextToPayload contextToPayload;
 
   public RouteCollection(Env env) {
+    this(env, new Resources(env));
+  }
+
+  private RouteCollection(Env env, Resources resources) {
+    this(env, resources, new CompilerFacade(env, resources), new Site(env, resources));
+  }
+
+  // Compilers, templates and site index are expensive to build. They can be
+  // shared by the successive RouteCollections of a reloading server.
+  //
+  public RouteCollection(Env env, Resources resources, CompilerFacade compilers, Site site) {
     this.env = env;
-    this.resources = new Resources(env);
-    this.compilers = new CompilerFacade(env, resources);
-    this.site = new Site(env, resources);
+    this.resources = resources;
+    this.compilers = compilers;
+    this.site = site;
     this.methodAnnotationsFactory = createMethodAnnotationsFactory();
     this.routes = new RouteSorter();
     this.filters = new LinkedList<>();
+    this.constants = new ArrayList<>();
     this.iocAdapter = new Singletons();
     this.extensions = new Extensions() {
       // No extension
@@ -88,9 +113,10 @@ public class RouteCollection implements Routes {
   public void configure(Configuration configuration) {
     configuration.configure(this);
     installExtensions();
+    constants.forEach(Supplier::get);
     addStaticRoutes();
 
-    contextToPayload = createContextToPayload(routes.getSortedRoutes(), filters);
+    contextToPayload = createContextToPayload(routes.getUserRoutes(), routes.getSortedOtherRoutes(), filters);
   }
 
   private void installExtensions() {
@@ -164,13 +190,28 @@ public class RouteCollection implements Routes {
 
   @Override
   public RouteCollection add(Object resource) {
-    addResource("", resource.getClass(), () -> resource);
+    addResource("", resource);
     return this;
   }
 
   @Override
   public RouteCollection add(String urlPrefix, Object resource) {
-    addResource(urlPrefix, resource.getClass(), () -> resource);
+    addResource(urlPrefix, resource);
+    return this;
+  }
+
+  // Used by the configurations that RoutesProcessor generates
+  @Override
+  public RouteCollection add(String httpMethod, String uriPattern, Class<?> resourceType, ResourceInvoker invoker, String methodName, Class<?>... parameterTypes) {
+    Method method;
+    try {
+      method = resourceType.getMethod(methodName, parameterTypes);
+    } catch (NoSuchMethodException e) {
+      throw new IllegalArgumentException("Unable to find " + methodName + " in " + resourceType, e);
+    }
+
+    checkResourceParametersCount(method, uriPattern);
+    add(httpMethod, uriPattern, new ReflectionRoute(() -> iocAdapter.get(resourceType), invoker, method, methodAnnotationsFactory.forMethod(method)));
     return this;
   }
 
@@ -178,19 +219,21 @@ public class RouteCollection implements Routes {
     parseAnnotations(urlPrefix, type, (httpMethod, uri, method) -> addResource(httpMethod, method, resource, uri));
   }
 
-  protected void addResource(String httpMethod, Method method, Supplier<Object> resource, String uriPattern) {
-    int methodParamsCount = method.getParameterCount();
-    int uriParamsCount = paramsCount(uriPattern);
-    if (methodParamsCount < uriParamsCount) {
-      throw new IllegalArgumentException("Expected at least " + uriParamsCount + " parameters in " + uriPattern);
-    }
+  protected void addResource(String urlPrefix, Object resource) {
+    parseAnnotations(urlPrefix, resource.getClass(), (httpMethod, uri, method) -> {
+      checkResourceParametersCount(method, uri);
+      add(httpMethod, uri, new ReflectionRoute(resource, method, methodAnnotationsFactory.forMethod(method)));
+    });
+  }
 
+  protected void addResource(String httpMethod, Method method, Supplier<Object> resource, String uriPattern) {
+    checkResourceParametersCount(method, uriPattern);
     add(httpMethod, uriPattern, new ReflectionRoute(resource, method, methodAnnotationsFactory.forMethod(method)));
   }
 
   @Override
   public RouteCollection get(String uriPattern, Object payload) {
-    get(uriPattern, () -> payload);
+    get(uriPattern, constant(uriPattern, payload));
     return this;
   }
 
@@ -232,7 +275,7 @@ public class RouteCollection implements Routes {
 
   @Override
   public RouteCollection options(String uriPattern, Object payload) {
-    options(uriPattern, () -> payload);
+    options(uriPattern, constant(uriPattern, payload));
     return this;
   }
 
@@ -274,7 +317,7 @@ public class RouteCollection implements Routes {
 
   @Override
   public RouteCollection head(String uriPattern, Object payload) {
-    head(uriPattern, () -> payload);
+    head(uriPattern, constant(uriPattern, payload));
     return this;
   }
 
@@ -466,11 +509,30 @@ public class RouteCollection implements Routes {
 
   @Override
   public RouteCollection autoDiscover(String packageToScan) {
-    Set<Class<?>> resources = new ClasspathScanner().getTypesAnnotatedWith(packageToScan, Resource.class);
+    // Prefer the index generated at compile time by RoutesProcessor. Jars and
+    // folders compiled without it are scanned.
+    //
+    for (Class<?> type : RoutesIndex.load(packageToScan)) {
+      if (Configuration.class.isAssignableFrom(type)) {
+        newConfiguration(type).configure(this);
+      } else {
+        add(type);
+      }
+    }
+
+    Set<Class<?>> resources = new ClasspathScanner(env.scanIndexFolder()).getTypesAnnotatedWith(packageToScan, Resource.class, RoutesIndex.LOCATION);
     resources.forEach(this::add);
     return this;
   }
 
+  private static Configuration newConfiguration(Class<?> type) {
+    try {
+      return (Configuration) type.newInstance();
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Unable to create " + type, e);
+    }
+  }
+
   @Override
   public Routes bind(String uriRoot, File path) {
     routes.addStaticRoute(new BoundFolderRoute(uriRoot, path));
@@ -506,6 +568,19 @@ public class RouteCollection implements Routes {
     return new RoutesWithPattern(this, uriPattern);
   }
 
+  // In prod, immutable content is serialized once, after the extensions
+  // have configured the object mapper
+  //
+  protected NoParamRoute constant(String uriPattern, Object payload) {
+    if (!env.prodMode() || !ConstantContent.supports(payload)) {
+      return () -> payload;
+    }
+
+    Supplier<ConstantContent> content = memoize(() -> new ConstantContent(uriPattern, payload, env));
+    constants.add(content);
+    return () -> content.get().payload();
+  }
+
   protected RouteCollection add(String method, String uriPattern, AnyRoute route) {
     routes.addUserRoute(new RouteWithPattern(method, uriPattern, route));
     return this;
@@ -526,42 +601,72 @@ public class RouteCollection implements Routes {
     return contextToPayload.get(context.uri(), context);
   }
 
-  private static ContextToPayload createContextToPayload(Route[] sortedRoutes, Deque<Supplier<Filter>> filters) {
+  private static ContextToPayload createContextToPayload(UserRoutes userRoutes, Route[] otherRoutes, Deque<Supplier<Filter>> filters) {
     ContextToPayload payloadSupplier = (uri, context) -> {
-      Payload response = notFound();
-
-      for (Route route : sortedRoutes) {
-        if (route.matchUri(uri)) {
-          if (route.matchMethod(context.method())) {
-            return route.apply(uri, context);
-          }
-          response = methodNotAllowed();
+      String method = context.method();
+
+      RouteTrie.Lookup lookup = userRoutes.lookup(uri, method);
+      if (lookup.route() != null) {
+        return lookup.route().apply(context, lookup);
+      }
+
+      for (Route route : otherRoutes) {
+        if (route.matchMethod(method) && route.matchUri(uri)) {
+          return route.apply(uri, context);
         }
       }
 
-      return response;
-    };
+      Set<String> allowedMethods = allowedMethods(uri, method, userRoutes, otherRoutes);
+      if (allowedMethods.isEmpty()) {
+        return notFound();
+      }
 
-    for (Supplier<Filter> filterSupplier : filters) {
-      Filter filter = filterSupplier.get();
+      String allow = String.join(", ", allowedMethods);
+      if (OPTIONS.equalsIgnoreCase(method)) {
+        return ok().withHeader(ALLOW, allow);
+      }
+      return methodNotAllowed().withHeader(ALLOW, allow);
+    };
 
-      ContextToPayload nextFilter = payloadSupplier;
+    // The first registered filter is the outermost
+    List<Filter> chain = new ArrayList<>();
+    filters.descendingIterator().forEachRemaining(filterSupplier -> chain.add(filterSupplier.get()));
 
-      payloadSupplier = (uri, context) -> {
-        if (filter.matches(uri, context)) {
-          return filter.apply(uri, context, () -> nextFilter.get(uri, context));
-        } else {
-          return nextFilter.get(uri, context);
-        }
-      };
+    for (int end = chain.size(); end > 0; end -= FilterChain.MAX_FILTERS) {
+      int start = Math.max(0, end - FilterChain.MAX_FILTERS);
+      payloadSupplier = new FilterChain(chain.subList(start, end).toArray(new Filter[end - start]), payloadSupplier);
     }
 
     return payloadSupplier;
   }
 
+  // Routes that accept the request's method have already failed to match the uri.
+  // Don't look them up again, static routes can hit the filesystem.
+  //
+  private static Set<String> allowedMethods(String uri, String method, UserRoutes userRoutes, Route[] otherRoutes) {
+    Set<String> matching = new HashSet<>();
+    userRoutes.addAllowedMethods(uri, matching);
+    for (Route route : otherRoutes) {
+      if (!route.matchMethod(method) && route.matchUri(uri)) {
+        of(UserRoutes.KNOWN_METHODS).filter(route::matchMethod).forEach(matching::add);
+      }
+    }
+
+    Set<String> allowedMethods = new LinkedHashSet<>();
+    if (!matching.isEmpty()) {
+      of(UserRoutes.KNOWN_METHODS).filter(matching::contains).forEach(allowedMethods::add);
+      allowedMethods.addAll(matching);
+      allowedMethods.add(OPTIONS);
+    }
+    return allowedMethods;
+  }
+
   protected MethodAnnotationsFactory createMethodAnnotationsFactory() {
     MethodAnnotationsFactory factory = new MethodAnnotationsFactory();
 
+    // First registered is innermost: authorization must run before validation
+    //
+    factory.registerAroundAnnotation(ETag.class, () -> (etag, context, payloadSupplier) -> validate(etag, context, payloadSupplier));
     factory.registerAroundAnnotation(Roles.class, () -> (roles, context, payloadSupplier) -> isAuthorized(roles, context.currentUser()) ? payloadSupplier.apply(context) : Payload.forbidden());
     factory.registerAfterAnnotation(AllowOrigin.class, () -> (origin, context, payload) -> payload.withAllowOrigin(origin.value()));
     factory.registerAfterAnnotation(AllowMethods.class, () -> (methods, context, payload) -> payload.withAllowMethods(methods.value()));
@@ -569,10 +674,21 @@ public class RouteCollection implements Routes {
     factory.registerAfterAnnotation(AllowHeaders.class, () -> (allowedHeaders, context, payload) -> payload.withAllowHeaders(allowedHeaders.value()));
     factory.registerAfterAnnotation(ExposeHeaders.class, () -> (exposedHeaders, context, payload) -> payload.withExposeHeaders(exposedHeaders.value()));
     factory.registerAfterAnnotation(MaxAge.class, () -> (maxAge, context, payload) -> payload.withMaxAge(maxAge.value()));
+    factory.registerAfterAnnotation(ETagWith.class, () -> (etagWith, context, payload) -> payload.withETagStrategy(etagWith.value()));
 
     return factory;
   }
 
+  protected Payload validate(ETag etag, Context context, Function<Context, Payload> payloadSupplier) {
+    String value = context.getBean(etag.value()).apply(context);
+    if (ETags.matches(value, context.header(IF_NONE_MATCH))) {
+      return Payload.notModified().withHeader(ETAG, value);
+    }
+
+    Payload payload = payloadSupplier.apply(context);
+    return payload.isSuccess() ? new Payload(payload).withHeader(ETAG, value) : payload;
+  }
+
   protected boolean isAuthorized(Roles roles, User user) {
     if (roles.allMatch()) {
       return of(roles.value()).allMatch(role -> user.isInRole(role));
@@ -581,6 +697,14 @@ public class RouteCollection implements Routes {
     }
   }
 
+  protected void checkResourceParametersCount(Method method, String uriPattern) {
+    int methodParamsCount = method.getParameterCount();
+    int uriParamsCount = paramsCount(uriPattern);
+    if (methodParamsCount < uriParamsCount) {
+      throw new IllegalArgumentException("Expected at least " + uriParamsCount + " parameters in " + uriPattern);
+    }
+  }
+
   protected String checkParametersCount(String uriPattern, int count) {
     if (paramsCount(uriPattern) != count) {
       String error = (count == 1) ? "1 parameter" : count + " parameters";
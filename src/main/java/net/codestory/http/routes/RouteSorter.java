@@ -15,6 +15,8 @@
  */
 package net.codestory.http.routes;
 
+import static java.util.Arrays.asList;
+
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -47,7 +49,23 @@ public class RouteSorter {
   public Route[] getSortedRoutes() {
     List<Route> sorted = new ArrayList<>();
 
-    userRoutes.values().stream().sorted((left, right) -> left.uriParser().compareTo(right.uriParser())).forEach(route -> sorted.add(route));
+    sorted.addAll(asList(getSortedUserRoutes()));
+    sorted.addAll(asList(getSortedOtherRoutes()));
+
+    return sorted.toArray(new Route[sorted.size()]);
+  }
+
+  public UserRoutes getUserRoutes() {
+    return new UserRoutes(getSortedUserRoutes());
+  }
+
+  public RouteWithPattern[] getSortedUserRoutes() {
+    return userRoutes.values().stream().sorted((left, right) -> left.uriParser().compareTo(right.uriParser())).toArray(RouteWithPattern[]::new);
+  }
+
+  public Route[] getSortedOtherRoutes() {
+    List<Route> sorted = new ArrayList<>();
+
     staticRoutes.forEach(route -> sorted.add(route));
     catchAllRoutes.values().stream().sorted((left, right) -> right.getMethod().compareTo(left.getMethod())).forEach(route -> sorted.add(route));
 
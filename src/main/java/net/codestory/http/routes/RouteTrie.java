@@ -0,0 +1,216 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.routes;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Segment trie of the user routes for one http method. Each route is ranked by
+// its position in the sorted routes so that the lookup honors UriParser's
+// priority rules.
+//
+// Routes without parameters always come first in this order, so they are
+// looked up by exact path in a HashMap before walking the trie.
+//
+class RouteTrie {
+  private static final int[] NO_PARTS = new int[0];
+
+  private final Map<String, RouteWithPattern> exactRoutes;
+  private final Node root;
+  private int maxDepth;
+
+  RouteTrie(RouteWithPattern[] sortedRoutes) {
+    this.exactRoutes = new HashMap<>();
+    this.root = new Node(0);
+    for (int rank = 0; rank < sortedRoutes.length; rank++) {
+      RouteWithPattern route = sortedRoutes[rank];
+      if (route.uriParser().hasParams()) {
+        add(rank, route);
+      } else {
+        exactRoutes.putIfAbsent(route.uriParser().path(), route);
+      }
+    }
+  }
+
+  private void add(int rank, RouteWithPattern route) {
+    String[] patternParts = route.uriParser().patternParts();
+
+    Node node = root;
+    for (String part : patternParts) {
+      node = UriParser.isParam(part) ? node.paramChild(rank) : node.literalChild(part, rank);
+    }
+    if (node.route == null) {
+      node.route = route;
+      node.routeRank = rank;
+    }
+
+    maxDepth = Math.max(maxDepth, patternParts.length);
+  }
+
+  public Lookup lookup(String uri) {
+    int end = UriParser.pathEnd(uri);
+
+    RouteWithPattern exactRoute = exactRoutes.get((end == uri.length()) ? uri : uri.substring(0, end));
+    if (exactRoute != null) {
+      Lookup lookup = new Lookup(uri, end, NO_PARTS);
+      lookup.route = exactRoute;
+      return lookup;
+    }
+
+    Lookup lookup = new Lookup(uri, end, new int[maxDepth + 1]);
+    find(root, 0, 0, lookup);
+    return lookup;
+  }
+
+  // Walks the uri by offsets, one part at a time, without splitting it.
+  // The start offset of each part is recorded for parameters extraction.
+  //
+  private static void find(Node node, int start, int depth, Lookup lookup) {
+    if (node.minRank > lookup.rank) {
+      return;
+    }
+
+    lookup.partStarts[depth] = start;
+
+    if (start > lookup.end) {
+      if ((node.route != null) && (node.routeRank < lookup.rank)) {
+        lookup.rank = node.routeRank;
+        lookup.route = node.route;
+      }
+      return;
+    }
+
+    String uri = lookup.uri;
+    int partEnd = UriParser.partEnd(uri, start, lookup.end);
+
+    Node literal = node.literalChild(uri, start, partEnd);
+    if (literal != null) {
+      find(literal, partEnd + 1, depth + 1, lookup);
+    }
+
+    Node param = node.param;
+    if ((param != null) && !((partEnd == start) && (partEnd == lookup.end))) {
+      find(param, partEnd + 1, depth + 1, lookup);
+    }
+  }
+
+  static class Lookup {
+    private final String uri;
+    private final int end;
+    private final int[] partStarts;
+    private int rank = Integer.MAX_VALUE;
+    private RouteWithPattern route;
+
+    private Lookup(String uri, int end, int[] partStarts) {
+      this.uri = uri;
+      this.end = end;
+      this.partStarts = partStarts;
+    }
+
+    public String uri() {
+      return uri;
+    }
+
+    public RouteWithPattern route() {
+      return route;
+    }
+
+    public int[] partStarts() {
+      return partStarts;
+    }
+  }
+
+  // Literal children are stored in an open addressing table so that
+  // they can be looked up by uri offsets without extracting a substring.
+  //
+  private static class Node {
+    private final int minRank;
+    private RouteWithPattern route;
+    private int routeRank;
+    private String[] literalKeys;
+    private Node[] literalNodes;
+    private int literalCount;
+    private Node param;
+
+    private Node(int minRank) {
+      this.minRank = minRank;
+      this.literalKeys = new String[4];
+      this.literalNodes = new Node[4];
+    }
+
+    private Node literalChild(String uri, int start, int end) {
+      int mask = literalKeys.length - 1;
+      for (int i = hash(uri, start, end) & mask; literalKeys[i] != null; i = (i + 1) & mask) {
+        if (UriParser.matchesPart(literalKeys[i], uri, start, end)) {
+          return literalNodes[i];
+        }
+      }
+      return null;
+    }
+
+    private Node literalChild(String part, int rank) {
+      Node child = literalChild(part, 0, part.length());
+      if (child == null) {
+        child = new Node(rank);
+        if ((literalCount + 1) * 2 > literalKeys.length) {
+          resize();
+        }
+        put(part, child);
+      }
+      return child;
+    }
+
+    private void put(String part, Node child) {
+      int mask = literalKeys.length - 1;
+      int i = hash(part, 0, part.length()) & mask;
+      while (literalKeys[i] != null) {
+        i = (i + 1) & mask;
+      }
+      literalKeys[i] = part;
+      literalNodes[i] = child;
+      literalCount++;
+    }
+
+    private void resize() {
+      String[] oldKeys = literalKeys;
+      Node[] oldNodes = literalNodes;
+
+      literalKeys = new String[oldKeys.length * 2];
+      literalNodes = new Node[oldNodes.length * 2];
+      literalCount = 0;
+      for (int i = 0; i < oldKeys.length; i++) {
+        if (oldKeys[i] != null) {
+          put(oldKeys[i], oldNodes[i]);
+        }
+      }
+    }
+
+    private Node paramChild(int rank) {
+      if (param == null) {
+        param = new Node(rank);
+      }
+      return param;
+    }
+
+    private static int hash(String value, int start, int end) {
+      int hash = 0;
+      for (int i = start; i < end; i++) {
+        hash = 31 * hash + value.charAt(i);
+      }
+      return hash ^ (hash >>> 16);
+    }
+  }
+}
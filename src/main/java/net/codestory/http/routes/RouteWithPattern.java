@@ -22,6 +22,7 @@ import java.util.Arrays;
 import java.util.Objects;
 
 import net.codestory.http.Context;
+import net.codestory.http.payload.Payload;
 
 class RouteWithPattern implements Route {
   private final String method;
@@ -34,6 +35,10 @@ class RouteWithPattern implements Route {
     this.route = route;
   }
 
+  public String method() {
+    return method;
+  }
+
   public UriParser uriParser() {
     return uriParser;
   }
@@ -54,6 +59,11 @@ class RouteWithPattern implements Route {
     return route.body(context, parameters);
   }
 
+  Payload apply(Context context, RouteTrie.Lookup lookup) throws Exception {
+    String[] parameters = uriParser.params(lookup.uri(), lookup.partStarts(), context.request().query());
+    return new Payload(route.body(context, parameters));
+  }
+
   @Override
   public String toString() {
     return "RouteWithPattern: (" + method + ") " + uriParser.uriPattern();
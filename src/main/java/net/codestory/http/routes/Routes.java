@@ -44,6 +44,9 @@ public interface Routes extends Serializable {
 
   Routes add(String urlPrefix, Object resource);
 
+  // Used by the code that RoutesProcessor generates
+  Routes add(String httpMethod, String uriPattern, Class<?> resourceType, ResourceInvoker invoker, String methodName, Class<?>... parameterTypes);
+
   Routes any(NoParamRouteWithContext route);
 
   Routes anyGet(NoParamRouteWithContext route);
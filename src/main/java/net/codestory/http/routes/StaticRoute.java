@@ -31,6 +31,7 @@ import static net.codestory.http.io.Strings.extension;
 
 class StaticRoute implements Route {
   private static final Path NOT_FOUND = Paths.get("");
+  private static final int MAX_NOT_FOUND = 1_000;
 
   private final Resources resources;
   private final CompilerFacade compilers;
@@ -38,7 +39,8 @@ class StaticRoute implements Route {
 
   StaticRoute(boolean cached, Resources resources, CompilerFacade compilers) {
     if (cached) {
-      this.findPath = new Cache<>(uri -> findPath(uri));
+      // 404 probes are cached apart so that they can't evict existing paths
+      this.findPath = new Cache<String, Object>(uri -> findPath(uri)).withNegativeCache(path -> path == NOT_FOUND, MAX_NOT_FOUND);
     } else {
       this.findPath = uri -> findPath(uri);
     }
@@ -21,6 +21,8 @@ import net.codestory.http.*;
 import net.codestory.http.io.*;
 
 public class UriParser implements Comparable<UriParser> {
+  private static final String[] NO_PARAMS = new String[0];
+
   private final String uriPattern;
   private final String[] patternParts;
   private final String[] queryParamsParts;
@@ -37,40 +39,107 @@ public class UriParser implements Comparable<UriParser> {
     return uriPattern;
   }
 
+  String[] patternParts() {
+    return patternParts;
+  }
+
+  boolean hasParams() {
+    return paramsCount > 0;
+  }
+
+  String path() {
+    return stripQueryParams(uriPattern);
+  }
+
   public String[] params(String uri, Query query) {
-    String[] uriParts = parts(uri);
+    int end = pathEnd(uri);
+    int start = 0;
 
-    String[] params = new String[paramsCount];
+    String[] params = newParams();
 
     int index = 0;
-    for (int i = 0; i < uriParts.length; i++) {
-      if (patternParts[i].startsWith(":")) {
-        params[index++] = uriParts[i];
+    for (String patternPart : patternParts) {
+      int partEnd = partEnd(uri, start, end);
+      if (isParam(patternPart)) {
+        params[index++] = uri.substring(start, partEnd);
       }
+      start = partEnd + 1;
     }
+
+    return queryParams(params, index, query);
+  }
+
+  // Same as params(uri, query) but reuses the part offsets captured
+  // while matching the uri, where part i spans [starts[i], starts[i + 1] - 1)
+  //
+  String[] params(String uri, int[] partStarts, Query query) {
+    String[] params = newParams();
+
+    int index = 0;
+    for (int i = 0; i < patternParts.length; i++) {
+      if (isParam(patternParts[i])) {
+        params[index++] = uri.substring(partStarts[i], partStarts[i + 1] - 1);
+      }
+    }
+
+    return queryParams(params, index, query);
+  }
+
+  private String[] newParams() {
+    return (paramsCount == 0) ? NO_PARAMS : new String[paramsCount];
+  }
+
+  private String[] queryParams(String[] params, int index, Query query) {
     for (int i = 0; i < queryParamsParts.length; i++) {
-      if (queryParamsParts[i].startsWith(":")) {
+      if (isParam(queryParamsParts[i])) {
         params[index++] = query.get(queryParamsParts[i - 1]);
       }
     }
-
     return params;
   }
 
   public boolean matches(String uri) {
-    String[] uriParts = parts(stripQueryParams(uri));
-    if (patternParts.length != uriParts.length) {
-      return false;
-    }
+    int end = pathEnd(uri);
+    int start = 0;
 
-    for (int i = 0; i < patternParts.length; i++) {
-      if (!patternParts[i].startsWith(":") && !patternParts[i].equals(uriParts[i])) {
+    int lastPart = patternParts.length - 1;
+    for (int i = 0; i <= lastPart; i++) {
+      if (start > end) {
         return false;
       }
+
+      int partEnd = partEnd(uri, start, end);
+      String patternPart = patternParts[i];
+      if (isParam(patternPart)) {
+        if ((i == lastPart) && (partEnd == start)) {
+          return false;
+        }
+      } else if (!matchesPart(patternPart, uri, start, partEnd)) {
+        return false;
+      }
+
+      start = partEnd + 1;
     }
 
-    int lastPart = patternParts.length - 1;
-    return !(patternParts[lastPart].startsWith(":") && uriParts[lastPart].isEmpty());
+    return start > end;
+  }
+
+  static boolean isParam(String patternPart) {
+    return patternPart.startsWith(":");
+  }
+
+  static boolean matchesPart(String part, String uri, int start, int end) {
+    return (part.length() == (end - start)) && uri.regionMatches(start, part, 0, part.length());
+  }
+
+  static int pathEnd(String uri) {
+    int indexQuestionMark = uri.indexOf('?');
+    return (indexQuestionMark == -1) ? uri.length() : indexQuestionMark;
+  }
+
+  static int partEnd(String uri, int start, int end) {
+    int indexSlash = uri.indexOf('/', start);
+    return ((indexSlash == -1) || (indexSlash > end)) ? end : indexSlash;
   }
 
   private static String[] parts(String uri) {
@@ -0,0 +1,67 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.routes;
+
+import static java.util.Arrays.asList;
+import static java.util.stream.Stream.of;
+import static net.codestory.http.constants.Methods.*;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+// One RouteTrie per http method
+//
+class UserRoutes {
+  static final String[] KNOWN_METHODS = {GET, HEAD, POST, PUT, DELETE, OPTIONS};
+
+  private static final RouteTrie NO_ROUTE = new RouteTrie(new RouteWithPattern[0]);
+
+  private final Map<String, RouteTrie> tries;
+
+  UserRoutes(RouteWithPattern[] sortedRoutes) {
+    Set<String> methods = new LinkedHashSet<>(asList(KNOWN_METHODS));
+    for (RouteWithPattern route : sortedRoutes) {
+      methods.add(upperCase(route.method()));
+    }
+
+    this.tries = new HashMap<>();
+    for (String method : methods) {
+      RouteWithPattern[] routes = of(sortedRoutes).filter(route -> route.matchMethod(method)).toArray(RouteWithPattern[]::new);
+      if (routes.length > 0) {
+        tries.put(method, new RouteTrie(routes));
+      }
+    }
+  }
+
+  public RouteTrie.Lookup lookup(String uri, String method) {
+    return tries.getOrDefault(upperCase(method), NO_ROUTE).lookup(uri);
+  }
+
+  public void addAllowedMethods(String uri, Set<String> allowedMethods) {
+    tries.forEach((method, trie) -> {
+      if (trie.lookup(uri).route() != null) {
+        allowedMethods.add(method);
+      }
+    });
+  }
+
+  private static String upperCase(String method) {
+    return method.toUpperCase(Locale.ENGLISH);
+  }
+}
@@ -21,25 +21,21 @@ import static java.util.stream.Collectors.toList;
 import static net.codestory.http.constants.Headers.*;
 import static net.codestory.http.constants.Methods.*;
 import static net.codestory.http.io.Strings.extension;
-import static org.webjars.WebJarAssetLocator.WEBJARS_PATH_PREFIX;
 
-import java.net.*;
-import java.nio.file.*;
 import java.util.*;
 
 import net.codestory.http.*;
-import net.codestory.http.io.*;
 import net.codestory.http.logs.*;
 import net.codestory.http.misc.*;
 import net.codestory.http.payload.*;
 
 class WebJarsRoute implements Route {
   private final boolean prodMode;
-  private final WebJarUrlFinder webJarUrlFinder;
+  private final WebJarIndex webJarIndex;
 
   public WebJarsRoute(boolean prodMode) {
     this.prodMode = prodMode;
-    this.webJarUrlFinder = new WebJarUrlFinder(prodMode);
+    this.webJarIndex = WebJarIndex.shared();
   }
 
   @Override
@@ -49,7 +45,7 @@ class WebJarsRoute implements Route {
       return false;
     }
 
-    if (getResource(uri) != null) {
+    if (webJarIndex.uris().contains(uri)) {
       return true;
     }
 
@@ -63,8 +59,7 @@ class WebJarsRoute implements Route {
   private void printKnownWebjars(String wantedUri) {
     String extension = extension(wantedUri);
 
-    List<String> filteredUris = new ClasspathScanner()
-      .getResources(Paths.get(WEBJARS_PATH_PREFIX))
+    List<String> filteredUris = webJarIndex.uris()
       .stream()
       .filter(uri -> uri.endsWith(extension))
       .collect(toList());
@@ -83,20 +78,11 @@ class WebJarsRoute implements Route {
 
   @Override
   public Payload body(Context context) {
-    String uri = context.uri();
+    String uri = webJarIndex.resolve(context.uri(), prodMode);
 
-    URL url = webJarUrlFinder.url(uri);
-
-    return new Payload(url)
+    return new Payload(webJarIndex.content(uri))
       .withHeader(CACHE_CONTROL, "public, max-age=31536000")
       .withHeader(LAST_MODIFIED, RFC_1123_DATE_TIME.format(now().minusMonths(1L)))
       .withHeader(EXPIRES, RFC_1123_DATE_TIME.format(now().plusWeeks(1L)));
   }
-
-  private static URL getResource(String uri) {
-    if (uri.endsWith("/")) {
-      return null;
-    }
-    return ClassPaths.getResource("META-INF/resources" + uri);
-  }
 }
@@ -16,11 +16,13 @@
 package net.codestory.http.templating;
 
 import static java.util.Arrays.*;
+import static java.util.stream.Stream.of;
 import static net.codestory.http.io.Strings.extension;
 
 import java.io.*;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.function.*;
 
 import net.codestory.http.compilers.*;
@@ -36,8 +38,22 @@ import com.github.jknack.handlebars.helper.*;
 import com.github.jknack.handlebars.io.*;
 
 public class HandlebarsCompiler implements TemplatingEngine {
+  // Their output only depends on their parameters and the templates
+  private static final Set<String> STATIC_HELPERS = new HashSet<>(asList(
+    "if", "unless", "each", "with", "lookup", "log", "block", "partial", "embed",
+    "each_reverse", "each_value", "google_analytics", "livereload"
+  ));
+
+  static {
+    of(StringHelpers.values()).map(StringHelpers::name).forEach(STATIC_HELPERS::add);
+  }
+
+  // Roots of the variables that depend on the request
+  private static final Set<String> REQUEST_VARIABLES = new HashSet<>(asList("request", "response", "cookies"));
+
   private final Handlebars handlebars;
   private final List<ValueResolver> resolvers;
+  private final Map<String, Boolean> dynamicSources = new ConcurrentHashMap<>();
 
   public HandlebarsCompiler(Env env, Resources resources, CompilerFacade compilers, MarkdownCompiler markdownCompiler) {
     this.handlebars = handlebars(env, resources, compilers, markdownCompiler);
@@ -67,10 +83,52 @@ public class HandlebarsCompiler implements TemplatingEngine {
 
   @Override
   public String compile(String template, Map<String, Object> variables) throws IOException {
-    return handlebars.compileInline(template).apply(context(variables));
+    Template compiled = handlebars.compileInline(template);
+    if (isDynamic(template, compiled)) {
+      ViewCompiler.recordDynamic();
+    }
+    return compiled.apply(context(variables));
+  }
+
+  // A template is dynamic when it reads the request, or calls a helper that
+  // could read anything else than its parameters, like the assets' versions.
+  // Includes are parsed lazily, when they are loaded.
+  //
+  private boolean isDynamic(String source, Template compiled) {
+    Boolean dynamic = dynamicSources.get(source);
+    if (dynamic == null) {
+      dynamic = compiled.collect(TagType.values()).stream().anyMatch(tag -> readsRequest(tag) || callsDynamicHelper(tag))
+        || compiled.collectReferenceParameters().stream().anyMatch(HandlebarsCompiler::readsRequest);
+      dynamicSources.put(source, dynamic);
+    }
+    return dynamic;
+  }
+
+  private boolean isDynamic(String source) throws IOException {
+    Boolean dynamic = dynamicSources.get(source);
+    return (dynamic != null) ? dynamic : isDynamic(source, handlebars.compileInline(source));
+  }
+
+  private boolean callsDynamicHelper(String tag) {
+    return (handlebars.helper(tag) != null) && !STATIC_HELPERS.contains(tag);
   }
 
-  private static Handlebars handlebars(Env env, Resources resources, CompilerFacade compilers, MarkdownCompiler markdownCompiler) {
+  private static boolean readsRequest(String variable) {
+    String path = variable;
+    while (path.startsWith("../")) {
+      path = path.substring(3);
+    }
+    if (path.startsWith("this.")) {
+      path = path.substring(5);
+    } else if (path.startsWith("./")) {
+      path = path.substring(2);
+    }
+
+    String root = path.split("[./\\[]", 2)[0];
+    return REQUEST_VARIABLES.contains(root);
+  }
+
+  private Handlebars handlebars(Env env, Resources resources, CompilerFacade compilers, MarkdownCompiler markdownCompiler) {
     return new Handlebars()
       .startDelimiter("[[")
       .endDelimiter("]]")
@@ -91,11 +149,15 @@ public class HandlebarsCompiler implements TemplatingEngine {
             throw new IOException("Template not found " + location);
           }
 
+          ViewCompiler.record(include);
           String body = resources.sourceFile(include).getSource();
 
           if (MarkdownCompiler.supports(include)) {
             body = markdownCompiler.compile(body);
           }
+          if (isDynamic(body)) {
+            ViewCompiler.recordDynamic();
+          }
 
           return new StringTemplateSource(location, body);
         }
@@ -15,6 +15,7 @@
  */
 package net.codestory.http.templating;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.nio.file.Files.*;
 import static java.util.Collections.emptyMap;
 import static java.util.stream.Collectors.groupingBy;
@@ -44,10 +45,16 @@ public class Site {
   private final Supplier<List<Map<String, Object>>> pages;
   private final Supplier<Map<String, List<Map<String, Object>>>> tags;
   private final Supplier<Map<String, List<Map<String, Object>>>> categories;
+  private final Supplier<List<Path>> dataFiles;
+  private final Supplier<String> version;
+  private volatile long indexedAt;
 
   public Site(Env env, Resources resources) {
     this.resources = resources;
-    resourceList = memoize(() -> list(env));
+    resourceList = memoize(() -> {
+      indexedAt = System.currentTimeMillis();
+      return list(env);
+    });
 
     yaml = memoize(() -> loadYamlConfig("_config.yml"));
 
@@ -75,6 +82,21 @@ public class Site {
     });
 
     categories = memoize(() -> getPages().stream().collect(groupingBy((Map<String, Object> page) -> Site.category(page), TreeMap::new, toList())));
+
+    dataFiles = memoize(() -> getResourceList()
+        .stream()
+        .filter(path -> path.equals("_config.yml") || path.startsWith("_data/"))
+        .map(path -> Paths.get(path))
+        .collect(toList())
+    );
+
+    version = memoize(() -> {
+      StringBuilder paths = new StringBuilder();
+      for (String path : getResourceList()) {
+        paths.append(path).append(':').append(resources.lastModified(Paths.get(path))).append(';');
+      }
+      return Long.toHexString(XxHash64.hash(paths.toString().getBytes(UTF_8)));
+    });
   }
 
   private static Set<String> list(Env env) {
@@ -132,6 +154,25 @@ public class Site {
     return categories.get();
   }
 
+  // _config.yml and _data/ files, that every template can read
+  public List<Path> dataFiles() {
+    return dataFiles.get();
+  }
+
+  // Every template can list the pages, tags and categories: this changes when
+  // a file of the site is added, removed or modified
+  //
+  public String version() {
+    return version.get();
+  }
+
+  // A removed file has no date, the index itself has one
+  //
+  public long indexedAt() {
+    getResourceList();
+    return indexedAt;
+  }
+
   private Map<String, Object> pathToMap(String path) {
     try {
       Path yamlPath = Paths.get(path);
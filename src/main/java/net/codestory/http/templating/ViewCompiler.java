@@ -18,12 +18,17 @@ package net.codestory.http.templating;
 import java.io.*;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 import net.codestory.http.io.*;
 import net.codestory.http.markdown.*;
 import net.codestory.http.templating.yaml.*;
 
 public class ViewCompiler {
+	private static final ThreadLocal<Recording> RECORDING = new ThreadLocal<>();
+	private static final Set<Path> DYNAMIC = Collections.unmodifiableSet(new TreeSet<>());
+
+	private final Map<String, Set<Path>> dependencies = new ConcurrentHashMap<>();
 	private final Resources resources;
 	private final TemplatingEngine templatingEngine;
 	private final MarkdownCompiler markdownCompiler;
@@ -34,11 +39,73 @@ public class ViewCompiler {
 		this.markdownCompiler = markdownCompiler;
 	}
 
+	// Files read by the last renderings of a view: the template, its layouts and
+	// its includes. Null until the view is rendered once, or if it is dynamic.
+	//
+	public Set<Path> dependencies(String uri) {
+		Set<Path> paths = dependencies.get(uri);
+		return (paths == DYNAMIC) ? null : paths;
+	}
+
+	// A view is dynamic when its files don't tell what it renders: the templating
+	// engine saw it read the request or call a helper that reads something else.
+	//
+	public boolean isDynamic(String uri) {
+		return dependencies.get(uri) == DYNAMIC;
+	}
+
 	public String render(String uri, Map<String, ?> keyValues) {
+		if (RECORDING.get() != null) {
+			return renderView(uri, keyValues);
+		}
+
+		Recording recording = new Recording();
+		RECORDING.set(recording);
+		try {
+			String body = renderView(uri, keyValues);
+			dependencies.merge(uri, recording.dynamic ? DYNAMIC : recording.paths, ViewCompiler::union);
+			return body;
+		} finally {
+			RECORDING.remove();
+		}
+	}
+
+	static void record(Path path) {
+		Recording recording = RECORDING.get();
+		if (recording != null) {
+			recording.paths.add(path);
+		}
+	}
+
+	static void recordDynamic() {
+		Recording recording = RECORDING.get();
+		if (recording != null) {
+			recording.dynamic = true;
+		}
+	}
+
+	// Includes are not always read again once compiled, so dependencies are
+	// only ever added
+	//
+	private static Set<Path> union(Set<Path> previous, Set<Path> recorded) {
+		if ((previous == DYNAMIC) || (recorded == DYNAMIC)) {
+			return DYNAMIC;
+		}
+		if (previous.containsAll(recorded)) {
+			return previous;
+		}
+
+		Set<Path> union = new TreeSet<>(previous);
+		union.addAll(recorded);
+		return union;
+	}
+
+	private String renderView(String uri, Map<String, ?> keyValues) {
 		Path path = resources.findExistingPath(uri);
 		if (path == null) {
 			throw new IllegalArgumentException("Template not found " + uri);
 		}
+		record(path);
 
 		try {
 			YamlFrontMatter yamlFrontMatter = YamlFrontMatter.parse(resources.sourceFile(path));
@@ -57,13 +124,18 @@ public class ViewCompiler {
 				return body;
 			}
 
-			String layoutContent = render("_layouts/" + layout, allKeyValues);
+			String layoutContent = renderView("_layouts/" + layout, allKeyValues);
 			return layoutContent.replace("[[body]]", body);
 		} catch (IOException e) {
 			throw new IllegalStateException("Unable to render template", e);
 		}
 	}
 
+	private static class Recording {
+		private final Set<Path> paths = new TreeSet<>();
+		private boolean dynamic;
+	}
+
 	private static Map<String, Object> merge(Map<String, ?> first, Map<String, ?> second) {
 		Map<String, Object> merged = new HashMap<>();
 		merged.putAll(first);
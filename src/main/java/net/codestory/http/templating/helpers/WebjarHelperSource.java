@@ -18,6 +18,7 @@ package net.codestory.http.templating.helpers;
 import java.util.function.Function;
 
 import net.codestory.http.misc.Cache;
+import net.codestory.http.misc.WebJarIndex;
 
 import org.webjars.WebJarAssetLocator;
 
@@ -28,7 +29,7 @@ public class WebjarHelperSource {
   private final Function<String, String> fullPathForUri;
 
   public WebjarHelperSource(boolean prodMode) {
-    this.webJarAssetLocator = new WebJarAssetLocator();
+    this.webJarAssetLocator = WebJarIndex.shared().locator();
     this.fullPathForUri = prodMode ? new Cache<>(uri -> fullPathForUri(uri)) : uri -> fullPathForUri(uri);
   }
 
@@ -64,6 +64,20 @@ public class CORSTest extends AbstractProdWebServerTest {
     options("/corspf").withHeader("Access-Control-Request-Method", "PUT").should().haveHeader("Access-Control-Allow-Methods", "PUT");
   }
 
+  @Test
+  public void implicit_options() {
+    configure(routes -> routes
+      .get("/resource", "GET")
+      .post("/resource", () -> "POST")
+      .put("/resource/:id", (context, id) -> "PUT")
+    );
+
+    options("/resource").should().respond(200).haveHeader("Allow", "GET, HEAD, POST, OPTIONS");
+    options("/resource/42").should().respond(200).haveHeader("Allow", "PUT, OPTIONS");
+    options("/index.html").should().respond(200).haveHeader("Allow", "GET, HEAD, OPTIONS");
+    options("/unknown").should().respond(404);
+  }
+
   @Test
   public void programmatic() {
     configure(routes -> routes.
@@ -15,11 +15,19 @@
  */
 package net.codestory.http;
 
-import net.codestory.http.payload.Payload;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+import net.codestory.http.annotations.*;
+import net.codestory.http.filters.basic.*;
+import net.codestory.http.payload.*;
+import net.codestory.http.security.*;
 import net.codestory.http.testhelpers.*;
 
 import org.junit.*;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
 public class CacheTest extends AbstractProdWebServerTest {
   @Test
   public void set_etag_header() {
@@ -65,4 +73,101 @@ public class CacheTest extends AbstractProdWebServerTest {
 
     get("/").withHeader("If-Modified-Since", "Thu, 13 Nov 2014 17:53:14 GMT").should().respond(304);
   }
+
+  @Test
+  public void etag_strategy() {
+    configure(routes -> routes
+        .get("/md5", new Payload("Hello").withETagStrategy(ETags.MD5))
+        .get("/fast", new Payload("Hello").withETagStrategy(ETags.FAST_HASH))
+        .get("/weak", new Payload("Hello").withETagStrategy(ETags.WEAK))
+        .get("/none", new Payload("Hello").withETagStrategy(ETags.NONE))
+    );
+
+    get("/md5").should().haveHeader("Etag", "8b1a9953c4611296a827abf8c47804d7");
+    get("/fast").should().haveHeader("Etag", "a75a91375b27d44");
+    get("/weak").should().haveHeader("Etag", "W/\"a75a91375b27d44\"");
+    get("/weak").withHeader("If-None-Match", "W/\"a75a91375b27d44\"").should().respond(304);
+    get("/weak").withHeader("If-None-Match", "\"other\", \"a75a91375b27d44\"").should().respond(304);
+    get("/none").withHeader("If-None-Match", "a75a91375b27d44").should().respond(200).contain("Hello");
+  }
+
+  @Test
+  public void etag_strategy_annotation() {
+    configure(routes -> routes
+        .add(ETagResource.class)
+    );
+
+    get("/md5").should().haveHeader("Etag", "8b1a9953c4611296a827abf8c47804d7");
+    get("/none").withHeader("If-None-Match", "a75a91375b27d44").should().respond(200);
+  }
+
+  public static class ETagResource {
+    @Get("/md5")
+    @ETagWith(ETags.MD5)
+    public String md5() {
+      return "Hello";
+    }
+
+    @Get("/none")
+    @ETagWith(ETags.NONE)
+    public String none() {
+      return "Hello";
+    }
+  }
+
+  @Test
+  public void etag_annotation_skips_the_route() {
+    configure(routes -> routes
+        .add(PollingResource.class)
+    );
+
+    get("/poll").should().respond(200).haveHeader("Etag", "\"v1\"").contain("state");
+    get("/poll").withHeader("If-None-Match", "\"v1\"").should().respond(304).haveHeader("Etag", "\"v1\"");
+    get("/poll").withHeader("If-None-Match", "\"v0\"").should().respond(200).contain("state");
+
+    assertThat(PollingResource.CALLS.get()).isEqualTo(2);
+  }
+
+  public static class Version implements Function<Context, String> {
+    @Override
+    public String apply(Context context) {
+      return "\"v1\"";
+    }
+  }
+
+  public static class PollingResource {
+    static final AtomicInteger CALLS = new AtomicInteger();
+
+    @Get("/poll")
+    @ETag(Version.class)
+    public String poll() {
+      CALLS.incrementAndGet();
+      return "state";
+    }
+  }
+
+  @Test
+  public void dont_validate_before_authorization() {
+    UsersList users = new UsersList.Builder()
+      .addUser("user", "pwd", "USER")
+      .addUser("other", "", "BUSINESS")
+      .build();
+
+    configure(routes -> routes
+        .filter(new BasicAuthFilter("/secure", "realm", users))
+        .add(SecureResource.class)
+    );
+
+    get("/secure/poll").withAuthentication("other", "").withHeader("If-None-Match", "\"v1\"").should().respond(403).not().haveHeader("Etag", "\"v1\"");
+    get("/secure/poll").withAuthentication("user", "pwd").withHeader("If-None-Match", "\"v1\"").should().respond(304);
+  }
+
+  public static class SecureResource {
+    @Get("/secure/poll")
+    @Roles("USER")
+    @ETag(Version.class)
+    public String poll() {
+      return "state";
+    }
+  }
 }
@@ -97,8 +97,8 @@ public class PostTest extends AbstractProdWebServerTest {
         .get("/get", () -> "Done")
     );
 
-    post("/get").should().respond(405);
-    post("/index.html").should().respond(405);
+    post("/get").should().respond(405).haveHeader("Allow", "GET, HEAD, OPTIONS");
+    post("/index.html").should().respond(405).haveHeader("Allow", "GET, HEAD, OPTIONS");
   }
 
   @Test
@@ -0,0 +1,84 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import net.codestory.http.payload.Payload;
+import net.codestory.http.testhelpers.*;
+
+import org.junit.*;
+
+public class RangeTest extends AbstractProdWebServerTest {
+  @Test
+  public void single_range() {
+    configure(routes -> routes
+        .get("/", "0123456789".getBytes(UTF_8))
+    );
+
+    get("/").should().respond(200).haveHeader("Accept-Ranges", "bytes").contain("0123456789");
+    get("/").withHeader("Range", "bytes=2-4").should().respond(206).haveHeader("Content-Range", "bytes 2-4/10").contain("234");
+    get("/").withHeader("Range", "bytes=-3").should().respond(206).haveHeader("Content-Range", "bytes 7-9/10").contain("789");
+    get("/").withHeader("Range", "bytes=8-").should().respond(206).haveHeader("Content-Range", "bytes 8-9/10").contain("89");
+  }
+
+  @Test
+  public void multiple_ranges() {
+    configure(routes -> routes
+        .get("/", "0123456789".getBytes(UTF_8))
+    );
+
+    get("/").withHeader("Range", "bytes=0-1,5-6").should().respond(206)
+      .haveType("multipart/byteranges")
+      .contain("Content-Range: bytes 0-1/10\r\n\r\n01\r\n")
+      .contain("Content-Range: bytes 5-6/10\r\n\r\n56\r\n");
+  }
+
+  @Test
+  public void unsatisfiable_range() {
+    configure(routes -> routes
+        .get("/", "0123456789".getBytes(UTF_8))
+    );
+
+    get("/").withHeader("Range", "bytes=20-30").should().respond(416).haveHeader("Content-Range", "bytes */10");
+  }
+
+  @Test
+  public void ignore_invalid_range() {
+    configure(routes -> routes
+        .get("/", "0123456789".getBytes(UTF_8))
+    );
+
+    get("/").withHeader("Range", "lines=1-2").should().respond(200).contain("0123456789");
+  }
+
+  @Test
+  public void static_file() {
+    get("/js/script.js").withHeader("Range", "bytes=0-4").should().respond(206).haveHeader("Content-Range", "bytes 0-4/21");
+  }
+
+  @Test
+  public void if_range() {
+    configure(routes -> routes
+        .get("/", new Payload("0123456789".getBytes(UTF_8)).withHeader("Last-Modified", "Wed, 12 Nov 2014 17:53:14 GMT"))
+    );
+
+    get("/").withHeader("Range", "bytes=0-1").withHeader("If-Range", "Wed, 12 Nov 2014 17:53:14 GMT").should().respond(206).contain("01");
+    get("/").withHeader("Range", "bytes=0-1").withHeader("If-Range", "Wed, 12 Nov 2014 17:00:00 GMT").should().respond(200).contain("0123456789");
+    get("/").withHeader("Range", "bytes=0-1").withHeader("If-Range", "781e5e245d69b566979b86e28d23f2c7").should().respond(206).contain("01");
+    get("/").withHeader("Range", "bytes=0-1").withHeader("If-Range", "\"outdated\"").should().respond(200).contain("0123456789");
+  }
+}
@@ -19,6 +19,7 @@ import static org.assertj.core.api.Assertions.*;
 
 import java.io.*;
 import java.nio.file.*;
+import java.util.concurrent.atomic.*;
 
 import net.codestory.http.io.Resources;
 import net.codestory.http.misc.*;
@@ -48,6 +49,45 @@ public class CompilersTest {
     assertThat(source).isEqualTo("HelloHello");
   }
 
+  @Test
+  public void compile_again_only_when_source_changes() throws IOException {
+    Compilers compilers = new Compilers(env.withDiskCache(false), resources);
+    AtomicInteger compilations = new AtomicInteger();
+    compilers.register(() -> (sourceFile) -> compilations.incrementAndGet() + sourceFile.getSource(), ".html", ".counted");
+
+    assertThat(compilers.compile(new SourceFile(Paths.get("file.counted"), "A")).content()).isEqualTo("1A");
+    assertThat(compilers.compile(new SourceFile(Paths.get("file.counted"), "A")).content()).isEqualTo("1A");
+    assertThat(compilers.compile(new SourceFile(Paths.get("file.counted"), "B")).content()).isEqualTo("2B");
+    assertThat(compilers.compile(new SourceFile(Paths.get("other.counted"), "B")).content()).isEqualTo("3B");
+    assertThat(compilers.compile(new SourceFile(Paths.get("file.counted"), "B")).content()).isEqualTo("2B");
+  }
+
+  @Test
+  public void compile_again_after_compiler_is_registered_again() throws IOException {
+    Compilers compilers = new Compilers(env.withDiskCache(false), resources);
+    compilers.register(() -> (sourceFile) -> "first", ".html", ".twice");
+    compilers.compile(new SourceFile(Paths.get("file.twice"), ""));
+
+    compilers.register(() -> (sourceFile) -> "second", ".html", ".twice");
+
+    assertThat(compilers.compile(new SourceFile(Paths.get("file.twice"), "")).content()).isEqualTo("second");
+  }
+
+  @Test
+  public void copies_share_the_cache_not_the_registrations() throws IOException {
+    Compilers compilers = new Compilers(env.withDiskCache(false), resources);
+    AtomicInteger compilations = new AtomicInteger();
+    compilers.register(() -> (sourceFile) -> compilations.incrementAndGet() + sourceFile.getSource(), ".html", ".counted");
+    compilers.compile(new SourceFile(Paths.get("file.counted"), "A"));
+
+    Compilers copy = new Compilers(compilers);
+    copy.register(() -> (sourceFile) -> "other", ".html", ".other");
+
+    assertThat(copy.compile(new SourceFile(Paths.get("file.counted"), "A")).content()).isEqualTo("1A");
+    assertThat(copy.canCompile(".other")).isTrue();
+    assertThat(compilers.canCompile(".other")).isFalse();
+  }
+
   @Test
   public void supports_file_cache_being_destroyed() throws IOException {
     // Delete cache
@@ -17,8 +17,10 @@ package net.codestory.http.convert;
 
 import static org.assertj.core.api.Assertions.*;
 
+import java.lang.reflect.*;
 import java.time.*;
 import java.util.*;
+import java.util.function.*;
 
 import org.junit.*;
 
@@ -43,6 +45,23 @@ public class TypeConvertTest {
     assertThat(TypeConvert.convertValue("false", boolean.class)).isFalse();
   }
 
+  @Test
+  public void convert_from_string_like_jackson() {
+    for (Class<?> type : new Class<?>[]{int.class, Integer.class, long.class, Long.class, boolean.class, Boolean.class, String.class, double.class}) {
+      for (String value : new String[]{"42", " 42 ", "+7", "", "null", "true", "True", "false", "4.5", "abc", "99999999999999999999", null}) {
+        assertThat(convert(TypeConvert.converterFromString(type), value)).as(type + " " + value).isEqualTo(convert(v -> TypeConvert.convertValue(v, (Type) type), value));
+      }
+    }
+  }
+
+  private static Object convert(Function<String, Object> converter, String value) {
+    try {
+      return converter.apply(value);
+    } catch (IllegalArgumentException e) {
+      return "error";
+    }
+  }
+
   @Test
   public void to_bean() {
     Map<String, String> keyValues = new HashMap<>();
@@ -15,16 +15,27 @@
  */
 package net.codestory.http.io;
 
+import static java.lang.annotation.RetentionPolicy.*;
 import static org.assertj.core.api.Assertions.*;
 
+import java.io.*;
+import java.lang.annotation.*;
 import java.nio.file.*;
 import java.util.*;
 
+import net.codestory.http.annotations.*;
+
 import org.junit.*;
+import org.junit.rules.*;
 
 public class ClasspathScannerTest {
   static ClasspathScanner classpathScanner = new ClasspathScanner();
 
+  static boolean notAnnotatedLoaded;
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
   @Test
   public void scan_main_resources() {
     Set<String> resources = classpathScanner.getResources(Paths.get("app"));
@@ -53,4 +64,61 @@ public class ClasspathScannerTest {
       .contains("META-INF/resources/webjars/fakewebjar/1.0/fake.js")
       .contains("META-INF/resources/webjars/jquery/1.11.1/jquery.js");
   }
+
+  @Test
+  public void find_annotated_types_without_loading_the_others() {
+    Set<Class<?>> types = classpathScanner.getTypesAnnotatedWith("net.codestory.http.io", Resource.class);
+
+    assertThat(types).containsOnly(Annotated.class, AnnotatedAfterOthers.class);
+    assertThat(notAnnotatedLoaded).isFalse();
+  }
+
+  @Test
+  public void skip_roots_with_a_given_resource() {
+    String testClasses = ClasspathScannerTest.class.getName().replace('.', '/') + ".class";
+
+    Set<Class<?>> types = classpathScanner.getTypesAnnotatedWith("net.codestory.http.io", Resource.class, testClasses);
+
+    assertThat(types).isEmpty();
+  }
+
+  @Test
+  public void keep_an_index() throws IOException {
+    File indexFolder = temp.newFolder();
+
+    Set<String> scanned = new ClasspathScanner(indexFolder).getTypeNamesAnnotatedWith("net.codestory.http.io", Resource.class);
+    File[] indexes = indexFolder.listFiles();
+    Set<String> indexed = new ClasspathScanner(indexFolder).getTypeNamesAnnotatedWith("net.codestory.http.io", Resource.class);
+
+    assertThat(indexes).hasSize(1);
+    assertThat(Files.readAllLines(indexes[0].toPath())).containsOnlyElementsOf(scanned);
+    assertThat(indexed).isEqualTo(scanned).contains(Annotated.class.getName());
+  }
+
+  @Resource
+  static class Annotated {
+  }
+
+  @Complex(types = {ElementType.TYPE, ElementType.METHOD}, nested = @Prefix("/api"), type = String.class, value = 42)
+  @Prefix("/other")
+  @Resource
+  static class AnnotatedAfterOthers {
+  }
+
+  static class NotAnnotated {
+    static {
+      notAnnotatedLoaded = true;
+    }
+  }
+
+  @Retention(RUNTIME)
+  @interface Complex {
+    ElementType[] types();
+
+    Prefix nested();
+
+    Class<?> type();
+
+    long value();
+  }
 }
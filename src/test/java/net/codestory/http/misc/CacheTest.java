@@ -0,0 +1,146 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.misc;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.junit.*;
+
+public class CacheTest {
+  List<String> computed = new ArrayList<>();
+
+  @Test
+  public void compute_once() {
+    Cache<String, String> cache = new Cache<>(this::compute);
+
+    assertThat(cache.apply("key")).isEqualTo("KEY");
+    assertThat(cache.apply("key")).isEqualTo("KEY");
+
+    assertThat(computed).containsExactly("key");
+    assertThat(cache.hitCount()).isEqualTo(1);
+    assertThat(cache.missCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void dont_cache_null() {
+    Cache<String, String> cache = new Cache<>(key -> {
+      computed.add(key);
+      return null;
+    });
+
+    assertThat(cache.apply("key")).isNull();
+    assertThat(cache.apply("key")).isNull();
+
+    assertThat(computed).containsExactly("key", "key");
+  }
+
+  @Test
+  public void bounded_size() {
+    Cache<String, String> cache = new Cache<>(this::compute).withMaximumSize(100);
+
+    for (int i = 0; i < 10_000; i++) {
+      cache.apply("key" + i);
+    }
+
+    assertThat(cache.size()).isEqualTo(100);
+    assertThat(cache.evictionCount()).isEqualTo(9_900);
+  }
+
+  @Test
+  public void keep_hot_entries_during_a_scan() {
+    Cache<String, String> cache = new Cache<>(this::compute).withMaximumSize(100);
+    cache.apply("hot");
+    cache.apply("hot");
+
+    for (int i = 0; i < 10_000; i++) {
+      cache.apply("scan" + i);
+    }
+    computed.clear();
+    cache.apply("hot");
+
+    assertThat(computed).isEmpty();
+  }
+
+  @Test
+  public void weight_entries() {
+    Cache<String, String> cache = new Cache<>(this::compute).withMaximumWeight(10, (key, value) -> value.length());
+
+    cache.apply("abcd");
+    cache.apply("efgh");
+    cache.apply("ijkl");
+    cache.apply("this one is too heavy to be cached");
+
+    assertThat(cache.weight()).isEqualTo(8);
+    assertThat(cache.size()).isEqualTo(2);
+  }
+
+  @Test
+  public void expire_after_write() {
+    AtomicLong time = new AtomicLong();
+    Cache<String, String> cache = new Cache<>(this::compute).withExpireAfterWrite(1, TimeUnit.SECONDS).withTicker(time::get);
+
+    cache.apply("key");
+    time.addAndGet(TimeUnit.MILLISECONDS.toNanos(999));
+    cache.apply("key");
+    time.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+    cache.apply("key");
+
+    assertThat(computed).containsExactly("key", "key");
+  }
+
+  @Test
+  public void negative_entries_dont_evict_positive_ones() {
+    Cache<String, String> cache = new Cache<>(this::compute).withMaximumSize(100).withNegativeCache(value -> value.startsWith("MISSING"), 10);
+    for (int i = 0; i < 100; i++) {
+      cache.apply("key" + i);
+    }
+
+    for (int i = 0; i < 10_000; i++) {
+      cache.apply("missing" + i);
+    }
+
+    assertThat(cache.size()).isEqualTo(100);
+    assertThat(cache.negativeSize()).isEqualTo(10);
+
+    computed.clear();
+    assertThat(cache.apply("missing9999")).isEqualTo("MISSING9999");
+    assertThat(cache.apply("key0")).isEqualTo("KEY0");
+    assertThat(computed).isEmpty();
+  }
+
+  @Test
+  public void invalidate_all() {
+    Cache<String, String> cache = new Cache<>(this::compute);
+    cache.apply("key");
+    cache.apply("key");
+
+    cache.invalidateAll();
+    cache.apply("key");
+
+    assertThat(cache.size()).isEqualTo(1);
+    assertThat(cache.weight()).isEqualTo(1);
+    assertThat(computed).containsExactly("key", "key");
+  }
+
+  private String compute(String key) {
+    computed.add(key);
+    return key.toUpperCase();
+  }
+}
@@ -19,6 +19,8 @@ import org.junit.Test;
 
 import java.io.File;
 
+import net.codestory.http.payload.ETags;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class EnvTest {
@@ -170,4 +172,14 @@ public class EnvTest {
     assertThat(env.liveReloadServer()).isFalse();
     assertThat(env.diskCache()).isFalse();
   }
-}
\ No newline at end of file
+
+  @Test
+  public void etagStrategy() {
+    Env env = Env.prod().withETagStrategy(ETags.FAST_HASH);
+
+    assertThat(Env.prod().etagStrategy()).isEqualTo(ETags.MD5);
+    assertThat(env.etagStrategy()).isEqualTo(ETags.FAST_HASH);
+    assertThat(env.prodMode()).isTrue();
+    assertThat(env.gzip()).isTrue();
+  }
+}
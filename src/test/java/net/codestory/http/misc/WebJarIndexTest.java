@@ -0,0 +1,51 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.misc;
+
+import static org.assertj.core.api.Assertions.*;
+
+import org.junit.*;
+
+public class WebJarIndexTest {
+  static WebJarIndex index = WebJarIndex.shared();
+
+  @Test
+  public void list_webjar_files() {
+    assertThat(index.uris()).contains(
+      "/webjars/fakewebjar/1.0/framework.js",
+      "/webjars/bootstrap/3.3.2-2/css/bootstrap.min.css"
+    );
+  }
+
+  @Test
+  public void resolve_minified_versions_once() {
+    assertThat(index.resolve("/webjars/fakewebjar/1.0/framework.js", true)).isEqualTo("/webjars/fakewebjar/1.0/framework.min.js");
+    assertThat(index.resolve("/webjars/fakewebjar/1.0/framework.min.js", false)).isEqualTo("/webjars/fakewebjar/1.0/framework.js");
+    assertThat(index.resolve("/webjars/fakewebjar/1.0/fake.min.js", true)).isEqualTo("/webjars/fakewebjar/1.0/fake.js");
+    assertThat(index.resolve("/webjars/fakewebjar/1.0/only-minified.js", false)).isEqualTo("/webjars/fakewebjar/1.0/only-minified.min.js");
+    assertThat(index.resolve("/webjars/fakewebjar/1.0/missing.js", true)).isNull();
+  }
+
+  @Test
+  public void serve_from_memory() {
+    assertThat(index.content("/webjars/fakewebjar/1.0/fake.js")).isSameAs(index.content("/webjars/fakewebjar/1.0/fake.js"));
+  }
+
+  @Test
+  public void share_with_asset_locator() {
+    assertThat(index.locator().getFullPath("bootstrap.css")).isEqualTo("META-INF/resources/webjars/bootstrap/3.3.2-2/css/bootstrap.css");
+  }
+}
@@ -0,0 +1,38 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.misc;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.*;
+
+import org.junit.*;
+
+public class XxHash64Test {
+  @Test
+  public void xxhash64() {
+    assertThat(XxHash64.hash("".getBytes(UTF_8))).isEqualTo(0xEF46DB3751D8E999L);
+    assertThat(XxHash64.hash("a".getBytes(UTF_8))).isEqualTo(0xD24EC4F1A98C6E5BL);
+    assertThat(XxHash64.hash("abc".getBytes(UTF_8))).isEqualTo(0x44BC2CF5AD770999L);
+    assertThat(XxHash64.hash("Nobody inspects the spammish repetition".getBytes(UTF_8))).isEqualTo(0xFBCEA83C8A378BF1L);
+  }
+
+  @Test
+  public void hash_part_of_an_array() {
+    byte[] data = "__Nobody inspects the spammish repetition__".getBytes(UTF_8);
+
+    assertThat(XxHash64.hash(data, 2, data.length - 4)).isEqualTo(0xFBCEA83C8A378BF1L);
+  }
+}
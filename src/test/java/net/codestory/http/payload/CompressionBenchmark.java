@@ -0,0 +1,77 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.payload;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.lang.management.*;
+import java.util.*;
+
+// Cpu spent per request depending on the minimum size of compressed responses.
+// Not part of the test suite, run with:
+//   java -cp <test classpath> net.codestory.http.payload.CompressionBenchmark
+//
+public class CompressionBenchmark {
+  private static final int ITERATIONS = 2_000;
+  private static final int[] SIZES = {128, 512, 900, 2_048, 16_384};
+  private static final int[] THRESHOLDS = {0, 512, 1_024, 4_096, Integer.MAX_VALUE};
+
+  private final ThreadMXBean threads;
+  private final List<byte[]> responses;
+
+  private CompressionBenchmark() {
+    threads = ManagementFactory.getThreadMXBean();
+    if (!threads.isCurrentThreadCpuTimeSupported()) {
+      throw new IllegalStateException("Thread cpu time is not supported");
+    }
+    threads.setThreadCpuTimeEnabled(true);
+
+    responses = new ArrayList<>();
+    for (int size : SIZES) {
+      StringBuilder json = new StringBuilder("[");
+      for (int i = 0; json.length() < size; i++) {
+        json.append("{\"id\":").append(i).append(",\"name\":\"item").append(i).append("\"},");
+      }
+      responses.add(json.substring(0, size).getBytes(UTF_8));
+    }
+  }
+
+  public static void main(String[] args) {
+    CompressionBenchmark benchmark = new CompressionBenchmark();
+
+    for (int threshold : THRESHOLDS) {
+      long nanos = benchmark.cpuPerRequest(new Compression().withMinimumSize(threshold));
+      System.out.println("Minimum size " + threshold + ": " + nanos / 1000 + "us cpu per request");
+    }
+  }
+
+  private long cpuPerRequest(Compression compression) {
+    Runnable requests = () -> {
+      for (int i = 0; i < ITERATIONS; i++) {
+        byte[] response = responses.get(i % responses.size());
+        if (compression.shouldCompress("application/json", response.length)) {
+          compression.gzip(response);
+        }
+      }
+    };
+
+    requests.run(); // Warm up
+
+    long before = threads.getCurrentThreadCpuTime();
+    requests.run();
+    return (threads.getCurrentThreadCpuTime() - before) / ITERATIONS;
+  }
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.payload;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.*;
+import java.util.zip.*;
+
+import net.codestory.http.io.InputStreams;
+
+import org.junit.Test;
+
+public class CompressionTest {
+  Compression compression = new Compression();
+
+  @Test
+  public void minimum_size() {
+    assertThat(compression.shouldCompress("text/html", 100)).isFalse();
+    assertThat(compression.shouldCompress("text/html", 2048)).isTrue();
+    assertThat(compression.shouldCompress("text/html", -1)).isTrue();
+    assertThat(compression.withMinimumSize(0).shouldCompress("text/html", 100)).isTrue();
+  }
+
+  @Test
+  public void deny_already_compressed_types() {
+    assertThat(compression.shouldCompress("image/png", 2048)).isFalse();
+    assertThat(compression.shouldCompress("video/mp4", 2048)).isFalse();
+    assertThat(compression.shouldCompress("image/svg+xml", 2048)).isTrue();
+    assertThat(compression.shouldCompress("application/json;charset=UTF-8", 2048)).isTrue();
+  }
+
+  @Test
+  public void allow_list() {
+    Compression onlyText = compression.withAllowedTypes("text/*", "application/json");
+
+    assertThat(onlyText.shouldCompress("text/css;charset=UTF-8", 2048)).isTrue();
+    assertThat(onlyText.shouldCompress("Application/JSON", 2048)).isTrue();
+    assertThat(onlyText.shouldCompress("application/octet-stream", 2048)).isFalse();
+    assertThat(onlyText.withDeniedTypes("text/csv").shouldCompress("text/csv", 2048)).isFalse();
+  }
+
+  @Test
+  public void gzip_with_pooled_deflaters() throws IOException {
+    byte[] data = "Hello World, Hello World, Hello World".getBytes(UTF_8);
+
+    for (int level = 1; level <= 9; level++) {
+      byte[] gzipped = compression.withLevel(level).gzip(data);
+
+      assertThat(gunzip(gzipped)).isEqualTo(data);
+      assertThat(gunzip(compression.withLevel(level).gzip(data))).isEqualTo(data);
+    }
+  }
+
+  @Test
+  public void gzip_stream() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    DeflaterOutputStream gzip = compression.gzip(bytes);
+    gzip.write("Hello ".getBytes(UTF_8));
+    gzip.write("World".getBytes(UTF_8));
+    gzip.finish();
+
+    assertThat(new String(gunzip(bytes.toByteArray()), UTF_8)).isEqualTo("Hello World");
+  }
+
+  @Test
+  public void sync_flush() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    DeflaterOutputStream gzip = compression.gzip(bytes, true);
+    gzip.write("data: Hello\n\n".getBytes(UTF_8));
+    gzip.flush();
+
+    byte[] flushed = bytes.toByteArray();
+    Inflater inflater = new Inflater(true);
+    inflater.setInput(flushed, 10, flushed.length - 10);
+    byte[] inflated = new byte[64];
+    int length;
+    try {
+      length = inflater.inflate(inflated);
+    } catch (DataFormatException e) {
+      throw new IOException(e);
+    } finally {
+      inflater.end();
+    }
+
+    assertThat(new String(inflated, 0, length, UTF_8)).isEqualTo("data: Hello\n\n");
+
+    gzip.close();
+    assertThat(new String(gunzip(bytes.toByteArray()), UTF_8)).isEqualTo("data: Hello\n\n");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void invalid_level() {
+    compression.withLevel(12);
+  }
+
+  private static byte[] gunzip(byte[] gzipped) throws IOException {
+    try (InputStream input = new GZIPInputStream(new ByteArrayInputStream(gzipped))) {
+      return InputStreams.readBytes(input);
+    }
+  }
+}
@@ -0,0 +1,70 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.payload;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.*;
+import java.util.*;
+
+import net.codestory.http.misc.*;
+
+import org.junit.*;
+
+public class ConstantContentTest {
+  Env env = Env.prod();
+
+  @Test
+  public void supports_immutable_content() {
+    assertThat(ConstantContent.supports("Hello")).isTrue();
+    assertThat(ConstantContent.supports("Hello".getBytes(UTF_8))).isTrue();
+    assertThat(ConstantContent.supports(42)).isTrue();
+    assertThat(ConstantContent.supports(Thread.State.NEW)).isTrue();
+
+    assertThat(ConstantContent.supports(new ArrayList<>())).isFalse();
+    assertThat(ConstantContent.supports(new Payload("Hello"))).isFalse();
+  }
+
+  @Test
+  public void only_local_urls() throws MalformedURLException {
+    assertThat(ConstantContent.supports(new URL("file:/tmp/index.html"))).isTrue();
+    assertThat(ConstantContent.supports(new URL("http://code-story.net/"))).isFalse();
+  }
+
+  @Test
+  public void serialize_once() {
+    ConstantContent constant = new ConstantContent("/answer", 42, env);
+
+    Payload first = constant.payload();
+    Payload second = constant.payload();
+
+    assertThat(first.rawContent()).isEqualTo(42);
+    assertThat(first.precomputed().data()).isEqualTo("42".getBytes(UTF_8));
+    assertThat(second).isNotSameAs(first);
+    assertThat(second.precomputed()).isSameAs(first.precomputed());
+  }
+
+  @Test
+  public void copy_byte_arrays() {
+    byte[] bytes = "Hello".getBytes(UTF_8);
+    ConstantContent constant = new ConstantContent("/", bytes, env);
+
+    bytes[0] = 'J';
+
+    assertThat(constant.payload().precomputed().data()).isEqualTo("Hello".getBytes(UTF_8));
+  }
+}
@@ -20,26 +20,40 @@ import net.codestory.http.Cookies;
 import net.codestory.http.Request;
 import net.codestory.http.Response;
 import net.codestory.http.compilers.CompilerFacade;
+import net.codestory.http.io.InputStreams;
 import net.codestory.http.io.Resources;
 import net.codestory.http.misc.Env;
+import net.codestory.http.templating.ModelAndView;
 import net.codestory.http.templating.Site;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.ArgumentCaptor;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.emptyMap;
 import static java.util.Collections.singletonMap;
+import static java.util.stream.Collectors.toList;
 import static net.codestory.http.constants.Headers.*;
 import static net.codestory.http.constants.HttpStatus.*;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.*;
 
 public class PayloadWriterTest {
@@ -55,6 +69,9 @@ public class PayloadWriterTest {
 
   PayloadWriter writer = new PayloadWriter(request, response, env, site, resources, compilerFacade);
 
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
   @Before
   public void setupContext() throws IOException {
     when(request.cookies()).thenReturn(cookies);
@@ -80,6 +97,142 @@ public class PayloadWriterTest {
     verify(outputStream).write(bytes);
   }
 
+  @Test
+  public void support_compressible_bytes() throws IOException {
+    CompressibleBytes bytes = new CompressibleBytes("script.js", "Hello".getBytes(UTF_8));
+
+    writer.write(new Payload(bytes));
+
+    verify(response).setHeader(CONTENT_TYPE, "application/javascript;charset=UTF-8");
+    verify(response).setHeader(ETAG, bytes.etag());
+    verify(response).setContentLength(5);
+    verify(outputStream).write(bytes.data());
+  }
+
+  @Test
+  public void write_precomputed_gzip() throws IOException {
+    Compression compression = new Compression().withMinimumSize(0);
+    PayloadWriter writer = new PayloadWriter(request, response, Env.prod().withCompression(compression), site, resources, compilerFacade);
+    when(request.header(ACCEPT_ENCODING, "")).thenReturn("gzip, deflate");
+    CompressibleBytes bytes = new CompressibleBytes("script.js", "Hello".getBytes(UTF_8));
+
+    writer.write(new Payload(bytes));
+
+    verify(response).setHeader(CONTENT_ENCODING, "gzip");
+    verify(response).setContentLength(bytes.gzipped(compression).length);
+    verify(outputStream).write(bytes.gzipped(compression));
+  }
+
+  @Test
+  public void send_static_file_through_channel() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    when(response.channel()).thenReturn(Channels.newChannel(bytes));
+    File file = resources.fileOnDisk(Paths.get("js/script.js"));
+
+    writer.write(new Payload(Paths.get("js/script.js")));
+
+    verify(response).setHeader(CONTENT_TYPE, "application/javascript;charset=UTF-8");
+    verify(response).setHeader(ETAG, Long.toHexString(file.lastModified()) + '-' + Long.toHexString(file.length()));
+    verify(response).setContentLength(file.length());
+    verify(response, never()).outputStream();
+    assertThat(bytes.toByteArray()).isEqualTo(Files.readAllBytes(file.toPath()));
+  }
+
+  @Test
+  public void serve_gzip_sidecar() throws IOException {
+    PayloadWriter writer = new PayloadWriter(request, response, Env.prod(), site, resources, compilerFacade);
+    when(request.header(ACCEPT_ENCODING, "")).thenReturn("gzip");
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    when(response.channel()).thenReturn(Channels.newChannel(bytes));
+
+    File file = temp.newFile("script.js");
+    Files.write(file.toPath(), "IDENTITY".getBytes(UTF_8));
+    Files.write(temp.newFile("script.js.gz").toPath(), "GZIPPED".getBytes(UTF_8));
+
+    writer.write(new Payload(file));
+
+    verify(response).setHeader(CONTENT_ENCODING, "gzip");
+    verify(response).setHeader(VARY, ACCEPT_ENCODING);
+    verify(response).setContentLength(7);
+    assertThat(bytes.toString("UTF-8")).isEqualTo("GZIPPED");
+  }
+
+  @Test
+  public void gzip_with_content_length() throws IOException {
+    Compression compression = new Compression().withMinimumSize(0);
+    PayloadWriter writer = new PayloadWriter(request, response, Env.prod().withCompression(compression), site, resources, compilerFacade);
+    when(request.header(ACCEPT_ENCODING, "")).thenReturn("gzip");
+    byte[] gzipped = compression.gzip("Hello".getBytes(UTF_8));
+
+    writer.write(new Payload("Hello").withHeader(VARY, "Origin"));
+
+    verify(response).setHeader(CONTENT_ENCODING, "gzip");
+    verify(response).setHeader(VARY, "Origin, Accept-Encoding");
+    verify(response).setContentLength(gzipped.length);
+    verify(outputStream).write(gzipped);
+  }
+
+  @Test
+  public void dont_share_gzipped_variants_by_user_etag() throws IOException {
+    Compression compression = new Compression().withMinimumSize(0);
+    PayloadWriter writer = new PayloadWriter(request, response, Env.prod().withCompression(compression), site, resources, compilerFacade);
+    when(request.header(ACCEPT_ENCODING, "")).thenReturn("gzip");
+
+    writer.write(new Payload("text/plain", "First".getBytes(UTF_8)).withHeader(ETAG, "\"1\""));
+    writer.write(new Payload("text/plain", "Second".getBytes(UTF_8)).withHeader(ETAG, "\"1\""));
+
+    verify(outputStream).write(compression.gzip("First".getBytes(UTF_8)));
+    verify(outputStream).write(compression.gzip("Second".getBytes(UTF_8)));
+  }
+
+  @Test
+  public void compress_route_bytes_on_each_request() throws IOException {
+    Compression compression = spy(new Compression().withMinimumSize(0));
+    PayloadWriter writer = new PayloadWriter(request, response, Env.prod().withCompression(compression), site, resources, compilerFacade);
+    when(request.header(ACCEPT_ENCODING, "")).thenReturn("gzip");
+
+    writer.write(new Payload("text/plain", "Dynamic".getBytes(UTF_8)));
+    writer.write(new Payload("text/plain", "Dynamic".getBytes(UTF_8)));
+
+    verify(compression, times(2)).gzip("Dynamic".getBytes(UTF_8));
+  }
+
+  @Test
+  public void release_deflater_when_streaming_fails() throws IOException {
+    PayloadWriter writer = new PayloadWriter(request, response, Env.prod().withCompression(new Compression().withMinimumSize(0)), site, resources, compilerFacade);
+    when(request.header(ACCEPT_ENCODING, "")).thenReturn("gzip");
+    AtomicReference<OutputStream> gzip = new AtomicReference<>();
+
+    try {
+      writer.write(new Payload("text/plain", (StreamingOutput) output -> {
+        gzip.set(output);
+        throw new IOException("Broken");
+      }));
+      fail("Expected failure");
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Unable to stream");
+    }
+
+    try {
+      gzip.get().write(1);
+      fail("Expected the stream to be finished");
+    } catch (IOException e) {
+      assertThat(e).hasMessage("Stream is already finished");
+    }
+  }
+
+  @Test
+  public void dont_gzip_small_or_compressed_contents() throws IOException {
+    Compression compression = new Compression().withMinimumSize(10);
+    PayloadWriter writer = new PayloadWriter(request, response, Env.prod().withCompression(compression), site, resources, compilerFacade);
+    when(request.header(ACCEPT_ENCODING, "")).thenReturn("gzip");
+
+    writer.write(new Payload("Hello"));
+    writer.write(new Payload("image/png", "Not really a png".getBytes(UTF_8)));
+
+    verify(response, never()).setHeader(CONTENT_ENCODING, "gzip");
+  }
+
   @Test
   public void support_bean_to_json() throws IOException {
     writer.write(new Payload(new Person("NAME", 42)));
@@ -204,6 +357,118 @@ public class PayloadWriterTest {
     verify(response).setStatus(NOT_MODIFIED);
   }
 
+  @Test
+  public void not_modified_before_rendering() throws IOException {
+    when(request.header("If-None-Match")).thenReturn("\"v42\"");
+
+    Payload payload = new Payload("application/json", new Object() {
+      public String getName() {
+        throw new IllegalStateException("Should not be serialized");
+      }
+    }).withETagSupplier(() -> "\"v42\"");
+    writer.write(payload);
+
+    verify(response).setStatus(NOT_MODIFIED);
+    verify(response).setHeader(ETAG, "\"v42\"");
+    verify(response, never()).outputStream();
+  }
+
+  @Test
+  public void etag_supplier_replaces_computed_etag() throws IOException {
+    when(request.header("If-None-Match")).thenReturn("\"v41\"");
+
+    Payload payload = new Payload("Hello").withETagSupplier(() -> "\"v42\"");
+    writer.write(payload);
+
+    verify(response).setStatus(OK);
+    verify(response, times(2)).setHeader(ETAG, "\"v42\"");
+    verify(outputStream).write("Hello".getBytes(UTF_8));
+    assertThat(payload.headers()).doesNotContainKey(ETAG);
+  }
+
+  @Test
+  public void template_etag_without_rendering() throws IOException {
+    writer.write(new Payload(Paths.get("pageYaml.html")));
+    writer.write(new Payload(Paths.get("pageYaml.html")));
+
+    ArgumentCaptor<String> etags = ArgumentCaptor.forClass(String.class);
+    verify(response, atLeastOnce()).setHeader(eq(ETAG), etags.capture());
+    when(request.header(IF_NONE_MATCH)).thenReturn(etags.getValue());
+
+    CompilerFacade compilers = spy(compilerFacade);
+    Response notModified = mock(Response.class);
+    new PayloadWriter(request, notModified, env, site, resources, compilers).write(new Payload(Paths.get("pageYaml.html")));
+
+    verify(notModified).setStatus(NOT_MODIFIED);
+    verify(compilers, never()).renderView(anyString(), anyMap());
+  }
+
+  @Test
+  public void render_model_and_view_to_validate_it() throws IOException {
+    writer.write(new Payload(ModelAndView.of("pageYaml.html", "name", "Bob")));
+
+    ArgumentCaptor<String> etags = ArgumentCaptor.forClass(String.class);
+    verify(response).setHeader(eq(ETAG), etags.capture());
+    when(request.header(IF_NONE_MATCH)).thenReturn(etags.getValue());
+
+    CompilerFacade compilers = spy(compilerFacade);
+    Response notModified = mock(Response.class);
+    new PayloadWriter(request, notModified, env, site, resources, compilers).write(new Payload(ModelAndView.of("pageYaml.html", "name", "Bob")));
+
+    verify(notModified).setStatus(NOT_MODIFIED);
+    verify(compilers).renderView(anyString(), anyMap());
+  }
+
+  @Test
+  public void write_constant_content() throws IOException {
+    Payload payload = new ConstantContent("/", "Hello", env).payload();
+    writer.write(payload);
+
+    verify(response).setStatus(OK);
+    verify(response).setHeader(CONTENT_TYPE, "text/html;charset=UTF-8");
+    verify(response).setHeader(ETAG, payload.precomputed().etag(env.etagStrategy()));
+    verify(outputStream).write("Hello".getBytes(UTF_8));
+  }
+
+  @Test
+  public void stream_large_json_list() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    when(response.outputStream()).thenReturn(bytes);
+
+    writer.write(new Payload(IntStream.range(0, 2000).boxed().collect(toList())));
+
+    verify(response).setHeader(CONTENT_TYPE, "application/json;charset=UTF-8");
+    verify(response, never()).setContentLength(anyLong());
+    verify(response, never()).setHeader(eq(ETAG), anyString());
+    assertThat(bytes.toString("UTF-8")).startsWith("[0,1,2,").endsWith(",1998,1999]");
+  }
+
+  @Test
+  public void stream_json_without_etag() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    when(response.outputStream()).thenReturn(bytes);
+
+    writer.write(new Payload(new Person("Bob", 42)).withETagStrategy(ETags.NONE));
+
+    verify(response, never()).setContentLength(anyLong());
+    assertThat(bytes.toString("UTF-8")).isEqualTo("{\"name\":\"Bob\",\"age\":42}");
+  }
+
+  @Test
+  public void gzip_streamed_json() throws IOException {
+    PayloadWriter writer = new PayloadWriter(request, response, Env.prod(), site, resources, compilerFacade);
+    when(request.header(ACCEPT_ENCODING, "")).thenReturn("gzip");
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    when(response.outputStream()).thenReturn(bytes);
+
+    writer.write(new Payload(IntStream.range(0, 2000).boxed().collect(toList())));
+
+    verify(response).setHeader(CONTENT_ENCODING, "gzip");
+    try (InputStream gunzip = new GZIPInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      assertThat(InputStreams.readString(gunzip, UTF_8)).endsWith(",1998,1999]");
+    }
+  }
+
   @Test
   public void head() throws IOException {
     when(request.method()).thenReturn("HEAD");
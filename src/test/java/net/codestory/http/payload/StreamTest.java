@@ -21,6 +21,7 @@ import org.junit.Test;
 import java.io.*;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
 import static java.util.stream.IntStream.range;
 
 public class StreamTest extends AbstractProdWebServerTest {
@@ -42,6 +43,39 @@ public class StreamTest extends AbstractProdWebServerTest {
     get("/events").should().contain("data: MESSAGE\ndata: 1\n\n" + "data: MESSAGE\ndata: 2\n\n" + "data: MESSAGE\ndata: 3\n\n");
   }
 
+  @Test
+  public void json_array() {
+    configure(routes -> routes
+        .get("/elements", () -> range(1, 4).mapToObj(i -> new Element("NAME" + i)))
+    );
+
+    get("/elements").withHeader("Accept", "application/json").should()
+      .haveType("application/json")
+      .contain("[{\"name\":\"NAME1\"},{\"name\":\"NAME2\"},{\"name\":\"NAME3\"}]");
+  }
+
+  @Test
+  public void ndjson() {
+    configure(routes -> routes
+        .get("/elements", () -> range(1, 4).mapToObj(i -> new Element("NAME" + i)))
+        .get("/produces", () -> new Payload("application/x-ndjson", range(1, 3).mapToObj(i -> new Element("NAME" + i))))
+    );
+
+    get("/elements").withHeader("Accept", "application/x-ndjson").should()
+      .haveType("application/x-ndjson")
+      .contain("{\"name\":\"NAME1\"}\n{\"name\":\"NAME2\"}\n{\"name\":\"NAME3\"}\n");
+    get("/produces").should().contain("{\"name\":\"NAME1\"}\n{\"name\":\"NAME2\"}\n");
+  }
+
+  @Test
+  public void iterator() {
+    configure(routes -> routes
+        .get("/elements", () -> asList("A", "B", "C").iterator())
+    );
+
+    get("/elements").should().haveType("application/json").contain("[\"A\",\"B\",\"C\"]");
+  }
+
   @Test
   public void byte_stream() {
     configure(routes -> routes
@@ -59,4 +93,22 @@ public class StreamTest extends AbstractProdWebServerTest {
 
     get("/stream").should().contain("Hello World");
   }
+
+  @Test
+  public void gzip_streaming_output() {
+    configure(routes -> routes
+        .get("/stream", () -> (StreamingOutput) output -> output.write("Hello World".getBytes(UTF_8)))
+    );
+
+    get("/stream").withHeader("Accept-Encoding", "gzip").should().haveHeader("Content-Encoding", "gzip").haveHeader("Vary", "Accept-Encoding");
+    get("/stream").should().contain("Hello World");
+  }
+
+  static class Element {
+    public final String name;
+
+    Element(String name) {
+      this.name = name;
+    }
+  }
 }
@@ -0,0 +1,124 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.processor;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeNotNull;
+
+import java.io.*;
+import java.net.*;
+import java.nio.file.*;
+import java.util.*;
+
+import javax.tools.*;
+
+import net.codestory.http.Configuration;
+import net.codestory.http.routes.Routes;
+import net.codestory.http.testhelpers.AbstractProdWebServerTest;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+public class RoutesProcessorTest extends AbstractProdWebServerTest {
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void generate_routes() throws Exception {
+    ClassLoader classLoader = compile("HelloResource",
+      "package sample;\n" +
+      "import net.codestory.http.annotations.*;\n" +
+      "@Resource @Prefix(\"/api\")\n" +
+      "public class HelloResource {\n" +
+      "  @Get(\"/hello/:name\") @Produces(\"text/plain\") public String hello(String name) { return \"Hello \" + name; }\n" +
+      "  @Get(\"/add/:left/:right\") public int add(int left, int right) { return left + right; }\n" +
+      "  @Post(\"/nothing\") public void nothing() { }\n" +
+      "  @Get(\"/version\") public static String version() { return \"1.0\"; }\n" +
+      "}\n");
+
+    Configuration configuration = (Configuration) classLoader.loadClass("sample.HelloResource_Routes").newInstance();
+    configure(configuration);
+
+    get("/api/hello/Bob").should().contain("Hello Bob").haveType("text/plain");
+    get("/api/add/20/22").should().contain("42");
+    post("/api/nothing").should().respond(200);
+    get("/api/version").should().contain("1.0");
+  }
+
+  @Test
+  public void fallback_to_reflection_for_inaccessible_resources() throws Exception {
+    compile("Outer",
+      "package sample;\n" +
+      "import net.codestory.http.annotations.*;\n" +
+      "public class Outer {\n" +
+      "  @Resource private static class Secret {\n" +
+      "    @Get(\"/secret\") public String secret() { return \"secret\"; }\n" +
+      "  }\n" +
+      "  @Resource public static class Open {\n" +
+      "    @Get(\"/open\") public String open() { return \"open\"; }\n" +
+      "  }\n" +
+      "}\n");
+
+    try (InputStream input = new FileInputStream(new File(temp.getRoot(), "classes/" + RoutesIndex.LOCATION))) {
+      assertThat(RoutesIndex.read(input)).containsOnly("sample.Outer$Secret", "sample.Outer_Open_Routes");
+    }
+  }
+
+  @Test
+  public void skip_stale_index_entries() {
+    assertThat(RoutesIndex.load(new LinkedHashSet<>(asList("sample.Deleted_Routes", Valid.class.getName())), "")).containsOnly(Valid.class);
+  }
+
+  @Test(expected = ExceptionInInitializerError.class)
+  public void fail_on_broken_index_entries() {
+    RoutesIndex.load(new LinkedHashSet<>(asList(Broken.class.getName())), "");
+  }
+
+  public static class Valid {
+  }
+
+  public static class Broken {
+    static {
+      if (true) {
+        throw new IllegalStateException("Broken");
+      }
+    }
+  }
+
+  private ClassLoader compile(String className, String source) throws Exception {
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    assumeNotNull(compiler);
+
+    File sources = temp.newFolder("sources");
+    File classes = temp.newFolder("classes");
+    File sourceFile = new File(sources, className + ".java");
+    Files.write(sourceFile.toPath(), source.getBytes(UTF_8));
+
+    String classPath = Paths.get(Routes.class.getProtectionDomain().getCodeSource().getLocation().toURI()).toString();
+
+    StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, UTF_8);
+    JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, null,
+      asList("-classpath", classPath, "-d", classes.getPath(), "-s", sources.getPath()),
+      null, fileManager.getJavaFileObjects(sourceFile));
+    task.setProcessors(asList(new RoutesProcessor()));
+
+    assertThat(task.call()).isTrue();
+
+    return new URLClassLoader(new URL[]{classes.toURI().toURL()}, getClass().getClassLoader());
+  }
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.reload;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import net.codestory.http.Configuration;
+import net.codestory.http.compilers.CompilersConfiguration;
+import net.codestory.http.extensions.Extensions;
+import net.codestory.http.misc.Env;
+import net.codestory.http.routes.RouteCollection;
+
+import org.junit.*;
+import org.mockito.ArgumentCaptor;
+
+public class ReloadingRoutesProviderTest {
+  Env env = mock(Env.class);
+  MasterFolderWatch folderWatch = mock(MasterFolderWatch.class);
+
+  AtomicInteger configurations = new AtomicInteger();
+  List<CompilersConfiguration> configuredCompilers = new CopyOnWriteArrayList<>();
+  volatile CountDownLatch configuring = new CountDownLatch(0);
+  volatile CountDownLatch finishConfiguring = new CountDownLatch(0);
+
+  Configuration configuration = routes -> {
+    routes.setExtensions(new Extensions() {
+      @Override
+      public void configureCompilers(CompilersConfiguration compilers, Env env) {
+        configuredCompilers.add(compilers);
+      }
+    });
+    configurations.incrementAndGet();
+    configuring.countDown();
+    try {
+      finishConfiguring.await();
+    } catch (InterruptedException e) {
+      throw new IllegalStateException(e);
+    }
+  };
+
+  ReloadingRoutesProvider provider = new ReloadingRoutesProvider(env, configuration);
+
+  @Before
+  public void watchFolders() {
+    when(env.folderWatcher()).thenReturn(folderWatch);
+  }
+
+  @Test
+  public void configure_once() {
+    RouteCollection routes = provider.get();
+
+    assertThat(provider.get()).isSameAs(routes);
+    assertThat(configurations.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void reload_in_background_after_changes() throws Exception {
+    RouteCollection previous = provider.get();
+    FolderChangeListener listener = listener();
+
+    configuring = new CountDownLatch(1);
+    finishConfiguring = new CountDownLatch(1);
+    listener.onChange();
+    listener.onChange();
+    listener.onChange();
+
+    assertThat(configuring.await(5, TimeUnit.SECONDS)).isTrue();
+    Future<RouteCollection> request = Executors.newSingleThreadExecutor().submit(provider::get);
+    Thread.sleep(ReloadingRoutesProvider.DEBOUNCE_MS);
+    assertThat(request.isDone()).isFalse();
+
+    finishConfiguring.countDown();
+    RouteCollection reloaded = request.get(5, TimeUnit.SECONDS);
+
+    assertThat(reloaded).isNotSameAs(previous);
+    Thread.sleep(2 * ReloadingRoutesProvider.DEBOUNCE_MS);
+    assertThat(provider.get()).isSameAs(reloaded);
+    assertThat(configurations.get()).isEqualTo(2);
+    assertThat(configuredCompilers).hasSize(2).doesNotHaveDuplicates();
+  }
+
+  @Test
+  public void dont_serve_the_previous_routes_after_changes() throws InterruptedException {
+    RouteCollection previous = provider.get();
+    listener().onChange();
+
+    RouteCollection reloaded = provider.get();
+
+    assertThat(reloaded).isNotSameAs(previous);
+    Thread.sleep(2 * ReloadingRoutesProvider.DEBOUNCE_MS);
+    assertThat(provider.get()).isSameAs(reloaded);
+    assertThat(configurations.get()).isEqualTo(2);
+  }
+
+  private FolderChangeListener listener() {
+    ArgumentCaptor<FolderChangeListener> listener = ArgumentCaptor.forClass(FolderChangeListener.class);
+    verify(folderWatch).addListener(listener.capture());
+    return listener.getValue();
+  }
+}
@@ -0,0 +1,147 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.routes;
+
+import static net.codestory.http.constants.Methods.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.codestory.http.Context;
+import net.codestory.http.filters.Filter;
+import net.codestory.http.filters.PayloadSupplier;
+import net.codestory.http.payload.Payload;
+
+import org.junit.Test;
+
+public class FilterChainTest {
+  List<String> calls = new ArrayList<>();
+
+  ContextToPayload routes = (uri, context) -> {
+    calls.add("route");
+    return Payload.ok();
+  };
+
+  @Test
+  public void apply_filters_in_order() throws Exception {
+    FilterChain chain = new FilterChain(new Filter[]{new Recording("first", null, null), new Recording("second", null, null)}, routes);
+
+    chain.get("/", context(GET));
+
+    assertThat(calls).containsExactly("first", "second", "route");
+  }
+
+  @Test
+  public void skip_filters_by_declared_prefix() throws Exception {
+    FilterChain chain = new FilterChain(new Filter[]{new Recording("admin", new String[]{"/admin", "/secure/"}, null), new Recording("all", null, null)}, routes);
+
+    chain.get("/admin/users", context(GET));
+    chain.get("/secure/page", context(GET));
+    chain.get("/secure", context(GET));
+    chain.get("/assets/app.js", context(GET));
+
+    assertThat(calls).containsExactly(
+      "admin", "all", "route",
+      "admin", "all", "route",
+      "all", "route",
+      "all", "route");
+  }
+
+  @Test
+  public void skip_filters_by_declared_method() throws Exception {
+    FilterChain chain = new FilterChain(new Filter[]{new Recording("post", null, new String[]{"post"})}, routes);
+
+    chain.get("/", context(POST));
+    chain.get("/", context(GET));
+    chain.get("/", context("PATCH"));
+
+    assertThat(calls).containsExactly("post", "route", "route", "route");
+  }
+
+  @Test
+  public void dont_call_matches_of_skipped_filters() throws Exception {
+    Filter filter = mock(Filter.class);
+    when(filter.uriPrefixes()).thenReturn(new String[]{"/admin/"});
+
+    FilterChain chain = new FilterChain(new Filter[]{filter}, routes);
+    chain.get("/assets/app.js", context(GET));
+
+    verify(filter, never()).matches(anyString(), any(Context.class));
+    assertThat(calls).containsExactly("route");
+  }
+
+  @Test
+  public void apply_only_matching_filters() throws Exception {
+    Filter notMatching = new Recording("notMatching", null, null) {
+      @Override
+      public boolean matches(String uri, Context context) {
+        return false;
+      }
+    };
+    FilterChain chain = new FilterChain(new Filter[]{notMatching, new Recording("matching", null, null)}, routes);
+
+    chain.get("/", context(GET));
+
+    assertThat(calls).containsExactly("matching", "route");
+  }
+
+  @Test
+  public void short_circuit() throws Exception {
+    Filter forbid = (uri, context, nextFilter) -> Payload.forbidden();
+    FilterChain chain = new FilterChain(new Filter[]{forbid, new Recording("never", null, null)}, routes);
+
+    Payload payload = chain.get("/", context(GET));
+
+    assertThat(payload.code()).isEqualTo(403);
+    assertThat(calls).isEmpty();
+  }
+
+  private static Context context(String method) {
+    Context context = mock(Context.class);
+    when(context.method()).thenReturn(method);
+    return context;
+  }
+
+  private class Recording implements Filter {
+    private final String name;
+    private final String[] uriPrefixes;
+    private final String[] methods;
+
+    private Recording(String name, String[] uriPrefixes, String[] methods) {
+      this.name = name;
+      this.uriPrefixes = uriPrefixes;
+      this.methods = methods;
+    }
+
+    @Override
+    public Payload apply(String uri, Context context, PayloadSupplier nextFilter) throws Exception {
+      calls.add(name);
+      return nextFilter.get();
+    }
+
+    @Override
+    public String[] uriPrefixes() {
+      return uriPrefixes;
+    }
+
+    @Override
+    public String[] methods() {
+      return methods;
+    }
+  }
+}
@@ -19,31 +19,120 @@ import static org.assertj.core.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 import net.codestory.http.*;
+import net.codestory.http.annotations.*;
+import net.codestory.http.payload.*;
 
 import org.junit.*;
 
-import java.io.IOException;
+import java.lang.reflect.Method;
 import java.lang.reflect.Type;
 
 public class ReflectionRouteTest {
-  Context context = mock(Context.class);
+  Request request = mock(Request.class);
+  Context context = new Context(request, mock(Response.class), null, null, null);
 
   @Test
-  public void inject_context() throws IOException {
-    when(context.extract((Type) Context.class)).thenReturn(context);
+  public void inject_context() throws Exception {
+    Object[] parameters = route("withContext", String.class, int.class, Context.class).arguments(context, new String[]{"param1", "42"});
 
-    Object[] parameters = ReflectionRoute.convert(context, new String[]{"param1", "param2"}, String.class, String.class, Context.class);
+    assertThat(parameters).containsExactly("param1", 42, context);
+  }
+
+  @Test
+  public void inject_request() throws Exception {
+    Object[] parameters = route("withRequest", String.class, Request.class).arguments(context, new String[]{"param"});
 
-    assertThat(parameters).containsExactly("param1", "param2", context);
+    assertThat(parameters).containsExactly("param", request);
   }
 
   @Test
-  public void inject_request() throws IOException {
-    Request request = mock(Request.class);
-    when(context.extract((Type) Request.class)).thenReturn(request);
+  public void inject_body() throws Exception {
+    when(request.contentAs((Type) Boolean.class)).thenReturn(true);
 
-    Object[] parameters = ReflectionRoute.convert(context, new String[]{"param"}, String.class, Request.class);
+    Object[] parameters = route("withBody", Boolean.class).arguments(context, new String[0]);
 
-    assertThat(parameters).containsExactly("param", request);
+    assertThat(parameters).containsExactly(true);
+  }
+
+  @Test
+  public void overridden_extract() throws Exception {
+    Context custom = new Context(request, mock(Response.class), null, null, null) {
+      @Override
+      public Object extract(Type type) {
+        return (type == Boolean.class) ? false : null;
+      }
+    };
+    when(request.contentAs((Type) Boolean.class)).thenReturn(true);
+
+    Object[] parameters = route("withBody", Boolean.class).arguments(custom, new String[0]);
+
+    assertThat(parameters).containsExactly(false);
+  }
+
+  @Test
+  public void invoke_singleton_resource() throws Exception {
+    Payload payload = (Payload) new ReflectionRoute(new Resource(), method("hello", String.class), new MethodAnnotationsFactory().forMethod(method("hello", String.class))).body(context, new String[]{"Bob"});
+
+    assertThat(payload.rawContent()).isEqualTo("Hello Bob");
+    assertThat(payload.rawContentType()).isEqualTo("text/plain");
+  }
+
+  @Test
+  public void invoke_resource_supplier() throws Exception {
+    Resource resource = new Resource();
+
+    Payload payload = (Payload) new ReflectionRoute(() -> resource, method("hello", String.class), new MethodAnnotationsFactory().forMethod(method("hello", String.class))).body(context, new String[]{"Joe"});
+
+    assertThat(payload.rawContent()).isEqualTo("Hello Joe");
+  }
+
+  @Test
+  public void invoke_void_and_static_methods() throws Exception {
+    Payload voidPayload = (Payload) new ReflectionRoute(new Resource(), method("nothing"), new MethodAnnotationsFactory().forMethod(method("nothing"))).body(context, new String[0]);
+    Payload staticPayload = (Payload) new ReflectionRoute(new Resource(), method("version"), new MethodAnnotationsFactory().forMethod(method("version"))).body(context, new String[0]);
+
+    assertThat(voidPayload.rawContent()).isEqualTo("");
+    assertThat(staticPayload.rawContent()).isEqualTo(42);
+    assertThat(staticPayload.rawContentType()).isNull();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void propagate_runtime_exceptions() throws Exception {
+    new ReflectionRoute(new Resource(), method("fail"), new MethodAnnotationsFactory().forMethod(method("fail"))).body(context, new String[0]);
+  }
+
+  private static ReflectionRoute route(String name, Class<?>... parameterTypes) throws NoSuchMethodException {
+    return new ReflectionRoute(new Resource(), method(name, parameterTypes), new MethodAnnotationsFactory().forMethod(method(name, parameterTypes)));
+  }
+
+  private static Method method(String name, Class<?>... parameterTypes) throws NoSuchMethodException {
+    return Resource.class.getDeclaredMethod(name, parameterTypes);
+  }
+
+  static class Resource {
+    @Produces("text/plain")
+    String hello(String name) {
+      return "Hello " + name;
+    }
+
+    void withContext(String first, int second, Context context) {
+    }
+
+    void withRequest(String first, Request request) {
+    }
+
+    void withBody(Boolean body) {
+    }
+
+    void nothing() {
+    }
+
+    static int version() {
+      return 42;
+    }
+
+    void fail() {
+      throw new IllegalArgumentException();
+    }
   }
 }
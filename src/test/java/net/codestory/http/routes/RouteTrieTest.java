@@ -0,0 +1,153 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.routes;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import static net.codestory.http.constants.Methods.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RouteTrieTest {
+  RouteSorter sorter = new RouteSorter();
+
+  @Test
+  public void find_fixed_route() {
+    RouteWithPattern hello = add(GET, "/hello");
+    add(GET, "/world");
+
+    assertThat(find("/hello", GET)).isSameAs(hello);
+    assertThat(find("/unknown", GET)).isNull();
+  }
+
+  @Test
+  public void find_exact_route() {
+    RouteWithPattern health = add(GET, "/api/health");
+    add(GET, "/api/health?verbose=:verbose");
+    RouteWithPattern catalog = add(GET, "/api/v1/catalog");
+
+    assertThat(find("/api/health", GET)).isSameAs(health);
+    assertThat(find("/api/health", HEAD)).isSameAs(health);
+    assertThat(find("/api/health?verbose=true", GET)).isSameAs(health);
+    assertThat(find("/api/v1/catalog", GET)).isSameAs(catalog);
+    assertThat(find("/api/v1/catalog", POST)).isNull();
+    assertThat(find("/api/v1/catalog/", GET)).isNull();
+  }
+
+  @Test
+  public void fixed_route_wins_over_param() {
+    RouteWithPattern param = add(GET, "/:param");
+    RouteWithPattern foo = add(GET, "/foo");
+
+    assertThat(find("/foo", GET)).isSameAs(foo);
+    assertThat(find("/bar", GET)).isSameAs(param);
+  }
+
+  @Test
+  public void keep_uri_parser_priority() {
+    RouteWithPattern twoParams = add(GET, "/foo/:a/:b");
+    RouteWithPattern oneParam = add(GET, "/:a/bar/qix");
+
+    assertThat(find("/foo/bar/qix", GET)).isSameAs(oneParam);
+    assertThat(find("/foo/other/qix", GET)).isSameAs(twoParams);
+  }
+
+  @Test
+  public void match_method() {
+    RouteWithPattern get = add(GET, "/action");
+    RouteWithPattern post = add(POST, "/action");
+
+    assertThat(find("/action", GET)).isSameAs(get);
+    assertThat(find("/action", HEAD)).isSameAs(get);
+    assertThat(find("/action", POST)).isSameAs(post);
+    assertThat(find("/action", PUT)).isNull();
+  }
+
+  @Test
+  public void allowed_methods() {
+    add(GET, "/action");
+    add(POST, "/action");
+    add(DELETE, "/:id");
+
+    assertThat(allowedMethods("/action")).containsOnly(GET, HEAD, POST, DELETE);
+    assertThat(allowedMethods("/other")).containsOnly(DELETE);
+    assertThat(allowedMethods("/other/path")).isEmpty();
+  }
+
+  @Test
+  public void dont_match_if_last_param_is_empty() {
+    RouteWithPattern last = add(GET, "/hello/:name/last");
+    add(GET, "/hello/:name");
+
+    assertThat(find("/hello/", GET)).isNull();
+    assertThat(find("/hello//last", GET)).isSameAs(last);
+  }
+
+  @Test
+  public void ignore_query_params_in_pattern() {
+    RouteWithPattern hello = add(GET, "/hello/:name?opt=:option");
+
+    assertThat(find("/hello/Bob", GET)).isSameAs(hello);
+    assertThat(find("/hello/", GET)).isNull();
+  }
+
+  @Test
+  public void same_result_as_linear_scan() {
+    for (int count : new int[]{10, 100, 1000}) {
+      sorter = new RouteSorter();
+      for (int i = 0; i < count; i++) {
+        add(GET, "/api/resource" + i);
+        add(GET, "/api/resource" + i + "/:id");
+        add(POST, "/api/:type/" + i);
+      }
+
+      UserRoutes userRoutes = sorter.getUserRoutes();
+      Route[] sortedRoutes = sorter.getSortedRoutes();
+      for (String uri : new String[]{"/api/resource0", "/api/resource" + (count - 1) + "/42", "/api/resource1/" + (count - 1), "/api/unknown/1", "/api/resource" + count}) {
+        for (String method : new String[]{GET, POST}) {
+          assertThat(userRoutes.lookup(uri, method).route()).isSameAs(linearScan(sortedRoutes, uri, method));
+        }
+      }
+    }
+  }
+
+  private RouteWithPattern add(String method, String uriPattern) {
+    RouteWithPattern route = new RouteWithPattern(method, uriPattern, (context, params) -> method + uriPattern);
+    sorter.addUserRoute(route);
+    return route;
+  }
+
+  private RouteWithPattern find(String uri, String method) {
+    return sorter.getUserRoutes().lookup(uri, method).route();
+  }
+
+  private Set<String> allowedMethods(String uri) {
+    Set<String> allowedMethods = new HashSet<>();
+    sorter.getUserRoutes().addAllowedMethods(uri, allowedMethods);
+    return allowedMethods;
+  }
+
+  private static Route linearScan(Route[] sortedRoutes, String uri, String method) {
+    for (Route route : sortedRoutes) {
+      if (route.matchUri(uri) && route.matchMethod(method)) {
+        return route;
+      }
+    }
+    return null;
+  }
+}
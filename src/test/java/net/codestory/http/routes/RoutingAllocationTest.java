@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.routes;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static net.codestory.http.constants.Methods.GET;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+public class RoutingAllocationTest {
+  private static final int ITERATIONS = 100_000;
+
+  private com.sun.management.ThreadMXBean threads;
+
+  @Before
+  public void allocationCounters() {
+    assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+
+    threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    assumeTrue(threads.isThreadAllocatedMemorySupported());
+    threads.setThreadAllocatedMemoryEnabled(true);
+  }
+
+  @Test
+  public void match_without_allocation() {
+    UriParser parser = new UriParser("/api/v1/catalog/:id/items");
+
+    long bytes = allocatedBytes(() -> {
+      for (int i = 0; i < ITERATIONS; i++) {
+        parser.matches("/api/v1/catalog/42/items");
+        parser.matches("/api/v1/other/42/items");
+      }
+    });
+
+    assertThat(bytes / ITERATIONS).isLessThan(8);
+  }
+
+  @Test
+  public void lookup_without_splitting_the_uri() {
+    RouteSorter sorter = new RouteSorter();
+    for (int i = 0; i < 100; i++) {
+      sorter.addUserRoute(new RouteWithPattern(GET, "/api/v1/catalog" + i + "/:id/items", (context, params) -> ""));
+    }
+    UserRoutes userRoutes = sorter.getUserRoutes();
+
+    long bytes = allocatedBytes(() -> {
+      for (int i = 0; i < ITERATIONS; i++) {
+        userRoutes.lookup("/api/v1/catalog42/42/items", GET);
+      }
+    });
+
+    // Only the Lookup and its offsets array
+    assertThat(bytes / ITERATIONS).isLessThan(128);
+  }
+
+  private long allocatedBytes(Runnable runnable) {
+    runnable.run(); // Warm up
+
+    long threadId = Thread.currentThread().getId();
+    long before = threads.getThreadAllocatedBytes(threadId);
+    runnable.run();
+    return threads.getThreadAllocatedBytes(threadId) - before;
+  }
+}
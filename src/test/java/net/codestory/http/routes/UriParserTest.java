@@ -51,6 +51,13 @@ public class UriParserTest {
     assertThat(new UriParser("/").params("/", null)).isEmpty();
   }
 
+  @Test
+  public void find_params_from_part_starts() {
+    assertThat(new UriParser("/hello/:name").params("/hello/Bob", new int[]{0, 1, 7, 11}, null)).containsExactly("Bob");
+    assertThat(new UriParser("/hello/:name/aged/:age").params("/hello//aged/", new int[]{0, 1, 7, 8, 13, 14}, null)).containsExactly("", "");
+    assertThat(new UriParser("/").params("/", new int[]{0, 1, 2}, null)).isEmpty();
+  }
+
   @Test
   public void find_query_params() {
     assertThat(new UriParser("/hello/:name?opt=:option").params("/hello/Bob", query("opt", "OPTIONS"))).containsExactly("Bob", "OPTIONS");
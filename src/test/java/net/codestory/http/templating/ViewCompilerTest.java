@@ -19,17 +19,28 @@ import net.codestory.http.compilers.CompilerFacade;
 import net.codestory.http.io.Resources;
 import net.codestory.http.markdown.*;
 import net.codestory.http.misc.Env;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
 import static java.util.Collections.emptyMap;
 import static java.util.Collections.singletonMap;
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class ViewCompilerTest {
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
   String render(String name, Map<String, Object> model, boolean prodMode) {
     Env env = prodMode ? Env.prod() : Env.dev();
     Resources resources = new Resources(env);
@@ -150,4 +161,58 @@ public class ViewCompilerTest {
   private static String ignoreLineEndings(String text) {
     return text.replaceAll("[\\n\\r]", "");
   }
+
+  @Test
+  public void record_dependencies() throws IOException {
+    write("app/page.html", "---\nlayout: main\n---\n[[>part.txt]]");
+    write("app/_layouts/main.html", "<body>[[body]]</body>");
+    write("app/_includes/part.txt", "PART");
+
+    ViewCompiler viewCompiler = viewCompilerInTemp();
+
+    assertThat(viewCompiler.dependencies("page")).isNull();
+    assertThat(viewCompiler.render("page", emptyMap())).isEqualTo("<body>PART</body>");
+    assertThat(viewCompiler.dependencies("page")).containsOnly(Paths.get("page.html"), Paths.get("_layouts/main.html"), Paths.get("_includes/part.txt"));
+  }
+
+  @Test
+  public void detect_dynamic_views() throws IOException {
+    write("app/text.html", "Any request, any response");
+    write("app/pages.html", "[[#each site.pages]][[this.title]][[/each]] [[capitalize name]]");
+    write("app/uri.html", "[[this.request.uri]]");
+    write("app/with.html", "[[#with request]][[uri]][[/with]]");
+    write("app/parent.html", "[[#each items]][[../cookies.name]][[/each]]");
+    write("app/asset.html", "[[script 'app.js']]");
+    write("app/include.html", "[[>uri.txt]]");
+    write("app/app.js", "var app;");
+    write("app/_includes/uri.txt", "[[response.status]]");
+
+    ViewCompiler viewCompiler = viewCompilerInTemp();
+    for (String view : asList("text", "pages", "uri", "with", "parent", "asset", "include")) {
+      viewCompiler.render(view, singletonMap("items", asList(1, 2)));
+    }
+
+    assertThat(viewCompiler.isDynamic("text")).isFalse();
+    assertThat(viewCompiler.isDynamic("pages")).isFalse();
+    assertThat(viewCompiler.isDynamic("uri")).isTrue();
+    assertThat(viewCompiler.isDynamic("with")).isTrue();
+    assertThat(viewCompiler.isDynamic("parent")).isTrue();
+    assertThat(viewCompiler.isDynamic("asset")).isTrue();
+    assertThat(viewCompiler.isDynamic("include")).isTrue();
+    assertThat(viewCompiler.dependencies("include")).isNull();
+  }
+
+  private ViewCompiler viewCompilerInTemp() {
+    Env env = Env.prod().withWorkingDir(temp.getRoot()).withClassPath(false);
+    Resources resources = new Resources(env);
+    CompilerFacade compilers = new CompilerFacade(env, resources);
+    MarkdownCompiler markdownCompiler = new MarkdownCompiler();
+    return new ViewCompiler(resources, new HandlebarsCompiler(env, resources, compilers, markdownCompiler), markdownCompiler);
+  }
+
+  private void write(String path, String content) throws IOException {
+    File file = new File(temp.getRoot(), path);
+    file.getParentFile().mkdirs();
+    Files.write(file.toPath(), content.getBytes(UTF_8));
+  }
 }